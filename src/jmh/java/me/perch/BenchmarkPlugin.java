@@ -0,0 +1,97 @@
+package me.perch;
+
+import me.perch.leaderboard.LeaderboardManager;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+// The plugin outside a running server, for benchmarks that drive real plugin
+// code: Leaderboards.getInstance() with a data folder, config, logger and
+// LeaderboardManager, and a Bukkit server without online players. Nothing is
+// enabled, so no task is ever scheduled and names are never looked up.
+public final class BenchmarkPlugin {
+
+    private BenchmarkPlugin() {}
+
+    // One instance per JVM; later trials of a fork reuse it.
+    public static synchronized Leaderboards create() throws ReflectiveOperationException, IOException {
+
+        if (Leaderboards.getInstance() != null) return Leaderboards.getInstance();
+
+        setStatic(Bukkit.class, "server", stub(Server.class));
+
+        Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+
+        // JavaPlugin refuses to be constructed outside a plugin class loader
+        Leaderboards plugin = (Leaderboards) ((Unsafe) theUnsafe.get(null)).allocateInstance(Leaderboards.class);
+        File dataFolder = Files.createTempDirectory("perchlb-bench").toFile();
+
+        set(JavaPlugin.class, plugin, "dataFolder", dataFolder);
+        set(JavaPlugin.class, plugin, "configFile", new File(dataFolder, "config.yml"));
+        set(JavaPlugin.class, plugin, "classLoader", Leaderboards.class.getClassLoader());
+        set(JavaPlugin.class, plugin, "logger", Logger.getLogger("PerchLeaderboards"));
+
+        setStatic(Leaderboards.class, "instance", plugin);
+        set(Leaderboards.class, plugin, "leaderboardManager", new LeaderboardManager(plugin));
+
+        return plugin;
+    }
+
+    // An online player that only knows its UUID and name.
+    public static Player player(UUID uuid, String name) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUniqueId" -> uuid;
+                    case "getName", "toString" -> name;
+                    case "getPlayer" -> proxy;
+                    case "isOnline" -> true;
+                    case "hashCode" -> uuid.hashCode();
+                    case "equals" -> proxy == args[0];
+                    default -> defaultValue(method.getReturnType());
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLogger" -> Logger.getLogger("Server");
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0F;
+        if (type == double.class) return 0D;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        return 0;
+    }
+
+    private static void set(Class<?> owner, Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static void setStatic(Class<?> owner, String name, Object value) throws ReflectiveOperationException {
+        set(owner, null, name, value);
+    }
+}
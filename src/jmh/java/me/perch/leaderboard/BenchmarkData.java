@@ -0,0 +1,39 @@
+package me.perch.leaderboard;
+
+import java.util.Random;
+import java.util.UUID;
+
+// Deterministic stand-ins for players and their placeholder values.
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    static UUID[] players(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] players = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return players;
+    }
+
+    static double[] values(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.floor(random.nextDouble() * 1_000_000);
+        }
+        return values;
+    }
+
+    // what PlaceholderAPI typically hands back: grouped digits, sometimes a fraction
+    static String[] placeholderResults(double[] values) {
+        String[] results = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            results[i] = i % 4 == 0
+                    ? String.format("%,.2f", values[i])
+                    : String.format("%,d", (long) values[i]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,90 @@
+package me.perch.leaderboard;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Serialization behind the boards' save() and load(), against the
+// file storage in a temporary directory.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    // share of the board changed between two saves
+    @Param({"0.01"})
+    public double churn;
+
+    private File folder;
+    private UUID[] players;
+    private double[] values;
+    private ScoreStore scores;
+    private FileStorage storage;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        folder = Files.createTempDirectory("perchlb-bench").toFile();
+        players = BenchmarkData.players(entries, 1);
+        values = BenchmarkData.values(entries, 2);
+
+        scores = new ScoreStore(2);
+        for (int i = 0; i < entries; i++) {
+            scores.put(players[i], 0, values[i]);
+            scores.put(players[i], 1, values[i] / 2);
+        }
+
+        storage = new FileStorage(folder, "bench", 2);
+        storage.writeAll(scores, System.currentTimeMillis(), 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        folder.delete();
+    }
+
+    // incremental save: journal append of the changed rows, compacting when due
+    @Benchmark
+    public void flush() throws IOException {
+
+        int changed = Math.max(1, (int) (entries * churn));
+
+        for (int n = 0; n < changed; n++) {
+            cursor = (cursor + 7919) % entries;
+            values[cursor] += 1;
+            scores.put(players[cursor], 1, values[cursor]);
+        }
+
+        storage.flush(scores, System.currentTimeMillis(), 0);
+    }
+
+    // full snapshot rewrite, as done on migration and compaction
+    @Benchmark
+    public void writeAll() throws IOException {
+        storage.writeAll(scores, System.currentTimeMillis(), 0);
+    }
+
+    // startup: map the snapshot, replay the journal and build the rank index
+    @Benchmark
+    public RankIndex load() throws IOException {
+
+        ScoreStore loaded = new ScoreStore(2);
+        new FileStorage(folder, "bench", 2).load(loaded);
+
+        RankIndex index = new RankIndex();
+        loaded.forEach(1, index::insert);
+        return index;
+    }
+}
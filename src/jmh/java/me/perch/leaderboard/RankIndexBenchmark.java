@@ -0,0 +1,68 @@
+package me.perch.leaderboard;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Rank maintenance and the top-list read that rebuildCache() performs.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RankIndexBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    private UUID[] players;
+    private double[] values;
+    private RankIndex index;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        players = BenchmarkData.players(entries, 1);
+        values = BenchmarkData.values(entries, 2);
+        index = new RankIndex();
+        for (int i = 0; i < entries; i++) {
+            index.insert(players[i], values[i]);
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 7919) % entries;
+        return cursor;
+    }
+
+    @Benchmark
+    public void update() {
+        int i = next();
+        double updated = values[i] + 1;
+        index.update(players[i], values[i], updated);
+        values[i] = updated;
+    }
+
+    @Benchmark
+    public int rankOf() {
+        int i = next();
+        return index.rankOf(players[i], values[i]);
+    }
+
+    // rebuildCache() without the name lookups: read the top 30 and format them
+    @Benchmark
+    public int rebuildTop() {
+        List<Map.Entry<UUID, Double>> top = index.range(1, 30);
+        int length = 0;
+        for (Map.Entry<UUID, Double> entry : top) {
+            length += TopSnapshot.format(entry.getValue()).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public Map.Entry<UUID, Double> deepPosition() {
+        return index.get(next() + 1);
+    }
+}
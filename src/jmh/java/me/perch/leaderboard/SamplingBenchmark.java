@@ -0,0 +1,81 @@
+package me.perch.leaderboard;
+
+import me.perch.BenchmarkPlugin;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// A sampling cycle once PlaceholderAPI has answered, through SimpleLeaderboard
+// itself: every online player's result is parsed and handed to onSample (stripe
+// lock, score store, rank index and sync tracking), then onCycleComplete
+// rebuilds the top list. A quarter of the players change score per cycle.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SamplingBenchmark {
+
+    private static final int ONLINE = 200;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"false", "true"})
+    public boolean synced;
+
+    private SimpleLeaderboard board;
+    private Player[] online;
+    private String[] results;
+    private String[] changedResults;
+    private int cursor;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+
+        BenchmarkPlugin.create();
+
+        UUID[] players = BenchmarkData.players(entries, 1);
+        board = BenchmarkBoards.simple("sampling", synced, players, BenchmarkData.values(entries, 2));
+
+        online = new Player[ONLINE];
+        for (int i = 0; i < ONLINE; i++) {
+            online[i] = BenchmarkPlugin.player(players[i], "player" + i);
+        }
+
+        results = BenchmarkData.placeholderResults(BenchmarkData.values(ONLINE, 3));
+        changedResults = BenchmarkData.placeholderResults(BenchmarkData.values(ONLINE, 4));
+
+        // the first batch after start is always a full one
+        if (synced) board.collectSync("bench", true);
+    }
+
+    @Benchmark
+    public double parse() {
+        cursor = (cursor + 1) % ONLINE;
+        return PlaceholderSampler.parse(results[cursor]);
+    }
+
+    @Benchmark
+    public void sample() {
+        cursor = (cursor + 1) % ONLINE;
+        board.onSample(online[cursor], PlaceholderSampler.parse(results[cursor]));
+    }
+
+    @Benchmark
+    public ScoreBatch cycle() {
+
+        round++;
+
+        for (int i = 0; i < ONLINE; i++) {
+            String result = (i + round) % 4 == 0 ? changedResults[i] : results[i];
+            board.onSample(online[i], PlaceholderSampler.parse(result));
+        }
+
+        board.onCycleComplete(new PlaceholderSampler.Cycle(board.getPlaceholder(), ONLINE, ONLINE, 0, ONLINE, 0));
+
+        // what the sync transport would send after this cycle
+        return synced ? board.collectSync("bench", false) : null;
+    }
+}
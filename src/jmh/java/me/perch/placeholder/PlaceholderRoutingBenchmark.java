@@ -0,0 +1,94 @@
+package me.perch.placeholder;
+
+import me.perch.BenchmarkPlugin;
+import me.perch.Leaderboards;
+import me.perch.leaderboard.BenchmarkBoards;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// PerchLeaderboardExpansion.onRequest as PlaceholderAPI calls it, for an online
+// player and 'distinct' different params spread over a few boards. Up to the
+// route cache size (4096) every request after the first is a cache hit; past it
+// the cache keeps being dropped and routes are compiled again.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaceholderRoutingBenchmark {
+
+    private static final int BOARDS = 8;
+    private static final int ENTRIES = 10_000;
+
+    private static final String[] SINGLE = {"description_", "rank_", "score_", "timeuntil_"};
+    private static final String[] POSITIONAL = {"topname_", "topvalueraw_", "topvalue_", "aroundname_", "aroundvalue_"};
+
+    @Param({"1000", "4096", "100000"})
+    public int distinct;
+
+    private PerchLeaderboardExpansion expansion;
+    private PrefixTrie<String> trie;
+    private OfflinePlayer player;
+    private String[] params;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+
+        Leaderboards plugin = BenchmarkPlugin.create();
+
+        Random random = new Random(1);
+        UUID[] players = new UUID[ENTRIES];
+        double[] values = new double[ENTRIES];
+
+        for (int board = 0; board < BOARDS; board++) {
+            for (int i = 0; i < ENTRIES; i++) {
+                players[i] = new UUID(random.nextLong(), random.nextLong());
+                values[i] = Math.floor(random.nextDouble() * 1_000_000);
+            }
+            BenchmarkBoards.simple("kills" + board, false, players, values);
+        }
+
+        expansion = new PerchLeaderboardExpansion(plugin);
+        player = BenchmarkPlugin.player(players[0], "player0");
+
+        trie = new PrefixTrie<>();
+        for (String prefix : SINGLE) trie.add(prefix, prefix);
+        for (String prefix : POSITIONAL) trie.add(prefix, prefix);
+
+        // written the way scoreboard configs do, so compiling a route lowercases it
+        Set<String> unique = new LinkedHashSet<>();
+
+        for (int board = 0; board < BOARDS && unique.size() < distinct; board++) {
+            for (String prefix : SINGLE) unique.add(prefix + "Kills" + board);
+        }
+
+        for (int position = 1; unique.size() < distinct; position++) {
+            for (int board = 0; board < BOARDS && unique.size() < distinct; board++) {
+                for (String prefix : POSITIONAL) {
+                    if (unique.size() < distinct) unique.add(prefix + "Kills" + board + "_" + position);
+                }
+            }
+        }
+
+        List<String> shuffled = new ArrayList<>(unique);
+        Collections.shuffle(shuffled, random);
+        params = shuffled.toArray(new String[0]);
+    }
+
+    private String next() {
+        cursor = (cursor + 1) % params.length;
+        return params[cursor];
+    }
+
+    @Benchmark
+    public String onRequest() {
+        return expansion.onRequest(player, next());
+    }
+
+    @Benchmark
+    public String trieMatch() {
+        return trie.match(next().toLowerCase(Locale.ROOT));
+    }
+}
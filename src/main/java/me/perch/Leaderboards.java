@@ -1,13 +1,16 @@
 package me.perch;
 
+import me.perch.leaderboard.LeaderboardListener;
 import me.perch.leaderboard.LeaderboardManager;
 import me.perch.placeholder.PerchLeaderboardExpansion;
+import me.perch.scheduler.TaskScheduler;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class Leaderboards extends JavaPlugin {
 
     private static Leaderboards instance;
+    private TaskScheduler scheduler;
     private LeaderboardManager leaderboardManager;
     private Messages messages;
 
@@ -15,11 +18,16 @@ public class Leaderboards extends JavaPlugin {
     public void onEnable() {
 
         instance = this;
+        scheduler = TaskScheduler.create(this);
 
+        saveDefaultConfig();
         messages = new Messages(this);
         leaderboardManager = new LeaderboardManager(this);
         leaderboardManager.loadLeaderboards();
 
+        Bukkit.getPluginManager().registerEvents(leaderboardManager.getNameCache(), this);
+        Bukkit.getPluginManager().registerEvents(new LeaderboardListener(this), this);
+
         getCommand("perchlb").setExecutor(new LeaderboardsCommands(this));
         getCommand("perchlb").setTabCompleter(new LeaderboardsCommands(this));
 
@@ -37,7 +45,7 @@ public class Leaderboards extends JavaPlugin {
             leaderboardManager.shutdown();
         }
 
-        Bukkit.getScheduler().cancelTasks(this);
+        scheduler.cancelAll();
     }
 
 
@@ -51,4 +59,6 @@ public class Leaderboards extends JavaPlugin {
     }
 
     public Messages getMessages() { return messages; }
+
+    public TaskScheduler getTaskScheduler() { return scheduler; }
 }
\ No newline at end of file
@@ -1,18 +1,36 @@
 package me.perch;
 
 import me.perch.leaderboard.Leaderboard;
+import me.perch.leaderboard.LeaderboardMetrics;
+import me.perch.leaderboard.NameCache;
+import me.perch.leaderboard.SimpleLeaderboard;
+import me.perch.leaderboard.StatsBackfill;
 import me.perch.leaderboard.TimedLeaderboard;
 import me.perch.leaderboard.TimedTask;
+import me.perch.leaderboard.TopSnapshot;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
 import org.bukkit.command.*;
-import java.math.BigDecimal;
+import org.bukkit.entity.Player;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
 
+    private static final int MAX_PAGE_SUGGESTIONS = 50;
+
     private final Leaderboards plugin;
 
+    // "<board>:<page>:<page size>" -> rendered /perchlb top page
+    private final Map<String, RenderedPage> topPages = new ConcurrentHashMap<>();
+
     public LeaderboardsCommands(Leaderboards plugin) {
         this.plugin = plugin;
     }
@@ -23,20 +41,26 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                              String label,
                              String[] args) {
 
+        // on Folia a player's command arrives on their region thread, but boards,
+        // backfills and reloads are driven from the global region
+        if (!plugin.getTaskScheduler().isGlobalThread()) {
+            plugin.getTaskScheduler().run(() -> onCommand(sender, command, label, args));
+            return true;
+        }
+
         if (args.length == 0) {
 
             if (sender.hasPermission("perchlb.admin")) {
                 plugin.getMessages().send(sender, "admin-usage",
-                        msg -> msg
-                                .replace("{reload}", "/perchlb reload")
-                                .replace("{info}", "/perchlb info <leaderboard>")
-                );
+                        Messages.slot("reload", "/perchlb reload")
+                                .and("info", "/perchlb info <leaderboard>")
+                                .and("stats", "/perchlb stats [leaderboard]")
+                                .and("backfill", "/perchlb backfill <leaderboard>"));
             }
 
             if (sender.hasPermission("perchlb.top")) {
                 plugin.getMessages().send(sender, "top-usage",
-                        msg -> msg.replace("{top}", "/perchlb top <leaderboard> <page>")
-                );
+                        Messages.slot("top", "/perchlb top <leaderboard> [page|me]"));
             }
 
             return true;
@@ -51,6 +75,7 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                     return true;
                 }
 
+                plugin.reloadConfig();
                 plugin.getLeaderboardManager().reload();
                 plugin.getMessages().reload();
                 plugin.getMessages().send(sender, "reload-success");
@@ -78,10 +103,10 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                 }
 
                 plugin.getMessages().send(sender, "info-header",
-                        msg -> msg.replace("{leaderboard}", lb.getName()));
+                        Messages.slot("leaderboard", lb.getName()));
 
                 plugin.getMessages().send(sender, "info-type",
-                        msg -> msg.replace("{type}", lb.getType()));
+                        Messages.slot("type", lb.getType()));
 
                 if (lb instanceof TimedLeaderboard timed) {
 
@@ -109,14 +134,11 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                         }
                     }
 
-                    final String formattedPlaceholders = placeholders.toString();
-
                     plugin.getMessages().send(sender, "info-placeholder",
-                            msg -> msg.replace("{placeholder}", formattedPlaceholders));
+                            Messages.slot("placeholder", plugin.getMessages().component(placeholders.toString())));
 
                     plugin.getMessages().send(sender, "info-description",
-                            msg -> msg.replace("{description}",
-                                    tasks.get(activeIndex).getDescription()));
+                            Messages.slot("description", plugin.getMessages().component(tasks.get(activeIndex).getDescription())));
 
                     long remaining = timed.getTimeUntilResetMillis();
 
@@ -125,19 +147,17 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                             : formatTime(remaining);
 
                     plugin.getMessages().send(sender, "info-reset",
-                            msg -> msg.replace("{time}", time));
+                            Messages.slot("time", time));
                 } else {
 
                     plugin.getMessages().send(sender, "info-placeholder",
-                            msg -> msg.replace("{placeholder}",
-                                    lb.getPlaceholder()));
+                            Messages.slot("placeholder", lb.getPlaceholder()));
 
                     plugin.getMessages().send(sender, "info-description",
-                            msg -> msg.replace("{description}",
-                                    lb.getDescription()));
+                            Messages.slot("description", plugin.getMessages().component(lb.getDescription())));
 
                     plugin.getMessages().send(sender, "info-reset",
-                            msg -> msg.replace("{time}", "Permanent"));
+                            Messages.slot("time", "Permanent"));
                 }
             }
 
@@ -162,66 +182,167 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                     return true;
                 }
 
+                // /perchlb top <leaderboard> me jumps to the page holding the sender
+                UUID self = null;
                 int page = 1;
 
-                if (args.length == 3) {
+                if (args.length == 3 && args[2].equalsIgnoreCase("me")) {
+
+                    if (!(sender instanceof Player player)) {
+                        plugin.getMessages().send(sender, "top-usage");
+                        return true;
+                    }
+
+                    self = player.getUniqueId();
+
+                } else if (args.length == 3) {
                     try {
                         page = Integer.parseInt(args[2]);
                     } catch (NumberFormatException ignored) {}
                 }
 
-                if (page < 1) page = 1;
-                if (page > 3) page = 3;
-                final int finalPage = page;
+                final UUID finalSelf = self;
+                final int requested = page;
+                final int perPage = getPageSize();
 
-                final int perPage = 10;
-                final int start = (page - 1) * perPage + 1;
-                final int end = start + perPage - 1;
+                // the page is read from the rank index and rendered off the main
+                // thread; only sending the lines happens back on it
+                plugin.getTaskScheduler().runAsync(() -> {
+                    List<Component> lines = renderTopPage(lb, requested, perPage, finalSelf);
+                    plugin.getTaskScheduler().run(() -> lines.forEach(sender::sendMessage));
+                });
+            }
 
-                plugin.getMessages().send(sender, "top-header",
-                        msg -> msg
-                                .replace("{leaderboard}", lb.getName())
-                                .replace("{page}", String.valueOf(finalPage))
-                );
+            case "stats" -> {
+
+                if (!sender.hasPermission("perchlb.admin")) {
+                    plugin.getMessages().send(sender, "no-permission");
+                    return true;
+                }
 
-                boolean any = false;
+                if (args.length > 2) {
+                    plugin.getMessages().send(sender, "stats-usage");
+                    return true;
+                }
 
-                for (int pos = start; pos <= end; pos++) {
+                if (args.length == 1) {
 
-                    final int finalPos = pos;
-                    String name = lb.getTopName(pos);
-                    String value = lb.getTopValue(pos);
+                    plugin.getMessages().send(sender, "stats-header");
 
-                    if (name == null || name.isEmpty()) continue;
-                    if (value == null || value.isEmpty()) continue;
+                    for (Leaderboard lb : plugin.getLeaderboardManager().getLeaderboards()) {
 
-                    double numeric;
+                        LeaderboardMetrics metrics = lb.getMetrics();
 
-                    try {
-                        numeric = Double.parseDouble(value);
-                    } catch (NumberFormatException e) {
-                        continue;
+                        plugin.getMessages().send(sender, "stats-board",
+                                Messages.slot("leaderboard", lb.getName())
+                                        .and("entries", String.valueOf(lb.getEntryCount()))
+                                        .and("sample-ms", formatMillis(metrics.getLastSampleNanos()))
+                                        .and("rebuild-ms", formatMillis(metrics.getLastRebuildNanos()))
+                                        .and("save-ms", formatMillis(metrics.getLastSaveNanos()))
+                                        .and("heap", formatBytes(lb.estimateHeapBytes())));
                     }
 
-                    if (numeric <= 0) continue;
+                    return true;
+                }
+
+                Leaderboard lb =
+                        plugin.getLeaderboardManager()
+                                .getLeaderboard(args[1]);
 
-                    String formattedValue = new BigDecimal(value)
-                            .stripTrailingZeros()
-                            .toPlainString();
+                if (lb == null) {
+                    plugin.getMessages().send(sender, "leaderboard-not-found");
+                    return true;
+                }
+
+                LeaderboardMetrics metrics = lb.getMetrics();
+
+                plugin.getMessages().send(sender, "stats-detail-header",
+                        Messages.slot("leaderboard", lb.getName()));
+
+                plugin.getMessages().send(sender, "stats-entries",
+                        Messages.slot("entries", String.valueOf(lb.getEntryCount()))
+                                .and("heap", formatBytes(lb.estimateHeapBytes())));
+
+                plugin.getMessages().send(sender, "stats-sampling",
+                        Messages.slot("sample-ms", formatMillis(metrics.getLastSampleNanos()))
+                                .and("calls", String.valueOf(metrics.getLastSampleCalls()))
+                                .and("failures", String.valueOf(metrics.getLastParseFailures()))
+                                .and("cycles", String.valueOf(metrics.getSampleCycles()))
+                                .and("total-calls", String.valueOf(metrics.getSampleCalls()))
+                                .and("total-failures", String.valueOf(metrics.getParseFailures())));
+
+                plugin.getMessages().send(sender, "stats-rebuild",
+                        Messages.slot("rebuild-ms", formatMillis(metrics.getLastRebuildNanos()))
+                                .and("rebuilds", String.valueOf(metrics.getRebuilds())));
+
+                plugin.getMessages().send(sender, "stats-save",
+                        Messages.slot("save-ms", formatMillis(metrics.getLastSaveNanos()))
+                                .and("save-bytes", formatBytes(metrics.getLastSaveBytes()))
+                                .and("saves", String.valueOf(metrics.getSaves()))
+                                .and("bytes-total", formatBytes(metrics.getBytesWritten()))
+                                .and("save-failures", String.valueOf(metrics.getSaveFailures())));
+            }
 
-                    any = true;
+            case "backfill" -> {
 
-                    plugin.getMessages().send(sender, "top-entry",
-                            msg -> msg
-                                    .replace("{position}", String.valueOf(finalPos))
-                                    .replace("{name}", name)
-                                    .replace("{score}", formattedValue)
-                    );
+                if (!sender.hasPermission("perchlb.admin")) {
+                    plugin.getMessages().send(sender, "no-permission");
+                    return true;
                 }
 
-                if (!any) {
-                    plugin.getMessages().send(sender, "no-entries");
+                if (args.length != 2) {
+                    plugin.getMessages().send(sender, "backfill-usage");
+                    return true;
+                }
+
+                Leaderboard lb =
+                        plugin.getLeaderboardManager()
+                                .getLeaderboard(args[1]);
+
+                if (lb == null) {
+                    plugin.getMessages().send(sender, "leaderboard-not-found");
+                    return true;
                 }
+
+                // only permanent boards with a configured backfill-statistic
+                if (!(lb instanceof SimpleLeaderboard simple)
+                        || simple.getBackfillStatistic() == null
+                        || !simple.isLoaded()) {
+                    plugin.getMessages().send(sender, "backfill-unsupported",
+                            Messages.slot("leaderboard", lb.getName()));
+                    return true;
+                }
+
+                File statsFolder = new File(Bukkit.getWorlds().get(0).getWorldFolder(), "stats");
+
+                if (!statsFolder.isDirectory()) {
+                    plugin.getMessages().send(sender, "backfill-no-stats");
+                    return true;
+                }
+
+                if (!simple.beginBackfill()) {
+                    plugin.getMessages().send(sender, "backfill-running",
+                            Messages.slot("leaderboard", lb.getName()));
+                    return true;
+                }
+
+                plugin.getMessages().send(sender, "backfill-started",
+                        Messages.slot("leaderboard", lb.getName())
+                                .and("statistic", simple.getBackfillStatistic()));
+
+                new StatsBackfill(plugin, simple, statsFolder, simple.getBackfillStatistic()).start(result -> {
+
+                    plugin.getLogger().info("Backfilled " + lb.getName() + ": " + result.merged()
+                            + " scores from " + result.files() + " files (" + result.failures()
+                            + " unreadable) in " + result.millis() + " ms.");
+
+                    plugin.getMessages().send(sender, "backfill-finished",
+                            Messages.slot("leaderboard", lb.getName())
+                                    .and("files", String.valueOf(result.files()))
+                                    .and("merged", String.valueOf(result.merged()))
+                                    .and("failures", String.valueOf(result.failures()))
+                                    .and("seconds", String.format(Locale.ROOT, "%.1f", result.millis() / 1000.0)));
+                });
             }
 
             default -> plugin.getMessages().send(sender, "unknown-command");
@@ -243,6 +364,8 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
             if (sender.hasPermission("perchlb.admin")) {
                 list.add("reload");
                 list.add("info");
+                list.add("stats");
+                list.add("backfill");
             }
 
             if (sender.hasPermission("perchlb.top")) {
@@ -252,7 +375,9 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
 
         if (args.length == 2) {
 
-            if ((args[0].equalsIgnoreCase("info")
+            if (((args[0].equalsIgnoreCase("info")
+                    || args[0].equalsIgnoreCase("stats")
+                    || args[0].equalsIgnoreCase("backfill"))
                     && sender.hasPermission("perchlb.admin"))
                     ||
                     (args[0].equalsIgnoreCase("top")
@@ -269,14 +394,103 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                 && args[0].equalsIgnoreCase("top")
                 && sender.hasPermission("perchlb.top")) {
 
-            list.add("1");
-            list.add("2");
-            list.add("3");
+            if (sender instanceof Player) list.add("me");
+
+            Leaderboard lb = plugin.getLeaderboardManager().getLeaderboard(args[1]);
+            int pages = lb != null ? Math.max(1, (lb.getEntryCount() + getPageSize() - 1) / getPageSize()) : 1;
+
+            // pages matching what has been typed so far, capped for huge boards
+            for (int page = 1; page <= pages && list.size() < MAX_PAGE_SUGGESTIONS; page++) {
+                String value = String.valueOf(page);
+                if (value.startsWith(args[2])) list.add(value);
+            }
         }
 
         return list;
     }
 
+    private int getPageSize() {
+        return Math.max(1, Math.min(100, plugin.getConfig().getInt("top.page-size", 10)));
+    }
+
+    // Rendered pages are reused until the board rebuilds its ranking (which
+    // publishes a new top snapshot) or messages.yml is reloaded.
+    private List<Component> renderTopPage(Leaderboard lb, int requested, int perPage, UUID self) {
+
+        Messages messages = plugin.getMessages();
+
+        // read before the page: a rebuild in between only retires the entry sooner
+        long version = lb.getTopSnapshot().getVersion();
+        long messagesVersion = messages.getVersion();
+
+        int pages = Math.max(1, (lb.getEntryCount() + perPage - 1) / perPage);
+        int page = requested;
+
+        if (self != null) {
+            int rank = lb.getRank(self);
+            if (rank <= 0) return List.of(messages.render("top-not-ranked", Messages.slot("leaderboard", lb.getName())));
+            page = (rank - 1) / perPage + 1;
+        }
+
+        page = Math.max(1, Math.min(page, pages));
+
+        String key = lb.getName() + ":" + page + ":" + perPage;
+        RenderedPage cached = topPages.get(key);
+
+        if (cached != null && cached.version() == version && cached.messagesVersion() == messagesVersion) {
+            return cached.lines();
+        }
+
+        int start = (page - 1) * perPage + 1;
+
+        NameCache names = plugin.getLeaderboardManager().getNameCache();
+        List<Map.Entry<UUID, Double>> entries = lb.getRange(start, perPage);
+        List<Component> lines = new ArrayList<>(entries.size() + 1);
+
+        lines.add(messages.render("top-header",
+                Messages.slot("leaderboard", lb.getName())
+                        .and("page", String.valueOf(page))
+                        .and("pages", String.valueOf(pages))));
+
+        for (int i = 0; i < entries.size(); i++) {
+
+            Map.Entry<UUID, Double> entry = entries.get(i);
+            if (!(entry.getValue() > 0)) continue;
+
+            String name = names.lookup(entry.getKey());
+            if (name == null) continue;
+
+            lines.add(messages.render("top-entry",
+                    Messages.slot("position", String.valueOf(start + i))
+                            .and("name", name)
+                            .and("score", TopSnapshot.format(entry.getValue()))));
+        }
+
+        if (lines.size() == 1) {
+            lines.add(messages.render("no-entries", null));
+        }
+
+        lines = List.copyOf(lines);
+
+        // stale pages of removed or resized boards are simply dropped wholesale
+        if (topPages.size() >= 256) topPages.clear();
+        topPages.put(key, new RenderedPage(version, messagesVersion, lines));
+
+        return lines;
+    }
+
+    private String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    private String formatBytes(long bytes) {
+
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
     private String formatTime(long millis) {
 
         long days = TimeUnit.MILLISECONDS.toDays(millis);
@@ -291,4 +505,6 @@ public class LeaderboardsCommands implements CommandExecutor, TabCompleter {
                 + hours + " hours, "
                 + minutes + " minutes";
     }
-}
\ No newline at end of file
+
+    private record RenderedPage(long version, long messagesVersion, List<Component> lines) {}
+}
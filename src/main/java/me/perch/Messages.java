@@ -2,19 +2,36 @@ package me.perch;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.Configuration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+// Every message is compiled once on load: colour codes are rewritten, legacy
+// messages are converted to MiniMessage and each {slot} becomes a <slot:key>
+// tag. Sending fills the slots through a TagResolver while MiniMessage builds
+// the message, so slots work inside gradients and hover text like any other
+// text. Messages sent without slots are parsed once and reused.
 public class Messages {
 
     private final Leaderboards plugin;
     private File file;
     private YamlConfiguration config;
 
+    private volatile Map<String, Template> templates = Map.of();
+    private volatile long version;
+
     public Messages(Leaderboards plugin) {
         this.plugin = plugin;
         load();
@@ -33,36 +50,175 @@ public class Messages {
         }
 
         config = YamlConfiguration.loadConfiguration(file);
+
+        // keys added in later versions fall back to the bundled messages.yml
+        InputStream defaults = plugin.getResource("messages.yml");
+        if (defaults != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(
+                    new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+        }
+
+        Map<String, Template> compiled = new HashMap<>();
+        Configuration bundled = config.getDefaults();
+
+        if (bundled != null) {
+            for (String key : bundled.getKeys(true)) {
+                if (config.isString(key)) compiled.put(key, compile(config.getString(key)));
+            }
+        }
+
+        for (String key : config.getKeys(true)) {
+            if (config.isString(key)) compiled.put(key, compile(config.getString(key)));
+        }
+
+        templates = compiled;
+        version++;
     }
 
     public void reload() {
         load();
     }
 
+    // Bumped on every load, so rendered messages cached elsewhere can tell they are stale.
+    public long getVersion() { return version; }
+
     public void send(CommandSender sender, String path) {
-        send(sender, path, null);
+        sender.sendMessage(render(path, null));
     }
 
-    public void send(CommandSender sender, String path, Replacer replacer) {
+    public void send(CommandSender sender, String path, Slots slots) {
+        sender.sendMessage(render(path, slots));
+    }
+
+    // Safe off the main thread; templates are never modified once loaded.
+    public Component render(String path, Slots slots) {
+
+        Template template = templates.get(path);
+        if (template == null) template = compile("<red>Missing message: " + path + "</red>");
+
+        if (slots == null || !template.slotted()) return template.parsed();
+
+        // tag arguments are not parsed (click commands, for one), so slots
+        // there are spliced in as escaped text
+        String markup = template.argumentSlots() ? slots.splice(template.markup()) : template.markup();
 
-        String raw = config.getString(path, "<red>Missing message: " + path + "</red>");
+        return MiniMessage.miniMessage().deserialize(markup, slots.resolver());
+    }
+
+    // Parses MiniMessage (or legacy) markup built at runtime, for slot values.
+    public Component component(String markup) {
+        return parse(markup);
+    }
+
+    public static Slots slot(String key, String value) {
+        return new Slots().and(key, value);
+    }
 
-        if (replacer != null) {
-            raw = replacer.apply(raw);
+    public static Slots slot(String key, Component value) {
+        return new Slots().and(key, value);
+    }
+
+    private Template compile(String message) {
+
+        if (message == null || message.isEmpty()) {
+            return new Template("", Component.empty(), false, false);
+        }
+
+        message = rewriteHex(message);
+
+        if (!isMiniMessage(message)) {
+            message = MiniMessage.miniMessage().serialize(
+                    LegacyComponentSerializer.legacyAmpersand().deserialize(message));
         }
 
-        sender.sendMessage(parse(raw));
+        StringBuilder markup = new StringBuilder(message.length() + 16);
+        boolean slotted = false;
+        boolean argumentSlots = false;
+        boolean inTag = false;
+        char quote = 0;
+
+        for (int i = 0; i < message.length(); i++) {
+
+            char c = message.charAt(i);
+
+            if (c == '\\' && i + 1 < message.length()) {
+                markup.append(c).append(message.charAt(++i));
+                continue;
+            }
+
+            String key = c == '{' ? slotKey(message, i) : null;
+
+            if (inTag) {
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '>') {
+                    inTag = false;
+                }
+
+                if (key != null) slotted = argumentSlots = true;
+
+            } else if (c == '<' && i + 1 < message.length() && isTagStart(message.charAt(i + 1))) {
+                inTag = true;
+
+            } else if (key != null) {
+                markup.append("<slot:").append(key).append('>');
+                i += key.length() + 1;
+                slotted = true;
+                continue;
+            }
+
+            markup.append(c);
+        }
+
+        String compiled = markup.toString();
+        return new Template(compiled, MiniMessage.miniMessage().deserialize(compiled, UNFILLED), slotted, argumentSlots);
+    }
+
+    // the key of a {key} slot starting at 'index', or null
+    private static String slotKey(String message, int index) {
+
+        int close = message.indexOf('}', index + 1);
+        if (close <= index + 1) return null;
+
+        String key = message.substring(index + 1, close);
+        return SLOT_KEY.matcher(key).matches() ? key : null;
+    }
+
+    private static boolean isTagStart(char c) {
+        return Character.isLetterOrDigit(c) || c == '/' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isMiniMessage(String message) {
+        return message.contains("<") && message.contains(">");
     }
 
     private static final Pattern HEX_PATTERN =
             Pattern.compile("&#([A-Fa-f0-9]{6})");
 
+    private static final Pattern SLOT_KEY = Pattern.compile("[a-z0-9_-]+");
+
+    // slots left unfilled render as written
+    private static final TagResolver UNFILLED = new Slots().resolver();
+
     private Component parse(String message) {
 
         if (message == null || message.isEmpty()) {
             return Component.empty();
         }
 
+        message = rewriteHex(message);
+
+        if (isMiniMessage(message)) {
+            return MiniMessage.miniMessage().deserialize(message);
+        }
+
+        return LegacyComponentSerializer.legacyAmpersand().deserialize(message);
+    }
+
+    private static String rewriteHex(String message) {
+
         Matcher matcher = HEX_PATTERN.matcher(message);
         StringBuffer buffer = new StringBuffer();
 
@@ -72,16 +228,66 @@ public class Messages {
         }
         matcher.appendTail(buffer);
 
-        message = buffer.toString();
+        return buffer.toString();
+    }
 
-        if (message.contains("<") && message.contains(">")) {
-            return MiniMessage.miniMessage().deserialize(message);
+    // markup: MiniMessage with <slot:key> tags; parsed: the message with no slots filled
+    private record Template(String markup, Component parsed, boolean slotted, boolean argumentSlots) {}
+
+    public static final class Slots {
+
+        private final Map<String, Component> values = new HashMap<>(8);
+
+        public Slots and(String key, String value) {
+            values.put(key, Component.text(value));
+            return this;
         }
 
-        return LegacyComponentSerializer.legacyAmpersand().deserialize(message);
-    }
+        public Slots and(String key, Component value) {
+            values.put(key, value);
+            return this;
+        }
+
+        private TagResolver resolver() {
+            return TagResolver.resolver("slot", (args, context) -> {
+                String key = args.popOr("slot key expected").value();
+                return Tag.selfClosingInserting(valueOf(key));
+            });
+        }
+
+        private Component valueOf(String key) {
+            Component value = values.get(key);
+            return value != null ? value : Component.text("{" + key + "}");
+        }
 
-    public interface Replacer {
-        String apply(String input);
+        // Replaces the {key} slots left in tag arguments with their plain text,
+        // escaped for a quoted argument.
+        private String splice(String markup) {
+
+            StringBuilder out = new StringBuilder(markup.length() + 32);
+            int literal = 0;
+            int index = markup.indexOf('{');
+
+            while (index >= 0) {
+
+                String key = slotKey(markup, index);
+
+                if (key == null || !values.containsKey(key)) {
+                    index = markup.indexOf('{', index + 1);
+                    continue;
+                }
+
+                String text = PlainTextComponentSerializer.plainText().serialize(values.get(key));
+
+                out.append(markup, literal, index).append(MiniMessage.miniMessage().escapeTags(text)
+                        .replace("'", "\\'")
+                        .replace("\"", "\\\""));
+
+                literal = index + key.length() + 2;
+                index = markup.indexOf('{', literal);
+            }
+
+            return out.append(markup, literal, markup.length()).toString();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package me.perch.leaderboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+// Binary snapshot (data/<name>.dat) plus append-only journal (data/<name>.journal).
+public class FileStorage implements LeaderboardStorage {
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final LeaderboardJournal journal;
+    private final int columns;
+
+    private boolean compactPending = false;
+    private volatile long bytesWritten;
+
+    public FileStorage(File folder, String board, int columns) {
+        this.snapshotFile = new File(folder, board + ".dat");
+        this.journalFile = new File(folder, board + ".journal");
+        this.journal = new LeaderboardJournal(journalFile, columns);
+        this.columns = columns;
+    }
+
+    @Override
+    public boolean exists() {
+        return snapshotFile.exists();
+    }
+
+    @Override
+    public synchronized long[] load(ScoreStore scores) throws IOException {
+
+        long[][] meta = { new long[0] };
+
+        if (snapshotFile.exists()) {
+            LeaderboardSnapshot snapshot = LeaderboardSnapshot.read(snapshotFile, columns);
+            scores.importColumns(snapshot.getColumns());
+            meta[0] = snapshot.getMeta();
+        }
+
+        journal.replay(new LeaderboardJournal.Listener() {
+
+            @Override
+            public void onRow(UUID uuid, double[] row) {
+
+                boolean removed = true;
+                for (double value : row) {
+                    if (!Double.isNaN(value)) removed = false;
+                }
+
+                if (removed) {
+                    scores.remove(uuid);
+                    return;
+                }
+
+                for (int column = 0; column < row.length; column++) {
+                    scores.put(uuid, column, row[column]);
+                }
+            }
+
+            @Override
+            public void onClear() { scores.clear(); }
+
+            @Override
+            public void onMeta(long[] replayed) { meta[0] = replayed; }
+        });
+
+        journal.markSynced(scores.markClean());
+        return meta[0];
+    }
+
+    // Appends only the changed rows; the snapshot is rewritten only when the
+    // journal outgrows it or a previous append failed.
+    @Override
+    public synchronized void flush(ScoreStore scores, long... meta) throws IOException {
+        try {
+            long before = journalFile.length();
+            journal.append(scores.drainDirty(), meta);
+            bytesWritten += Math.max(0, journalFile.length() - before);
+
+            if (compactPending || journal.shouldCompact(scores.size())) {
+                compactPending = false;
+                LeaderboardSnapshot.write(snapshotFile, scores.exportColumns(), meta);
+                bytesWritten += snapshotFile.length();
+                journal.truncate();
+            }
+        } catch (IOException e) {
+            compactPending = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void writeAll(ScoreStore scores, long... meta) throws IOException {
+        long generation = scores.markClean();
+
+        LeaderboardSnapshot.write(snapshotFile, scores.exportColumns(), meta);
+        bytesWritten += snapshotFile.length();
+        journal.truncate();
+        journal.markSynced(generation);
+    }
+
+    @Override
+    public long getBytesWritten() { return bytesWritten; }
+}
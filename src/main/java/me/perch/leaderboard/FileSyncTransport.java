@@ -0,0 +1,176 @@
+package me.perch.leaderboard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Sync over a folder shared by every server, e.g. on the same host. Each node
+// appends length-prefixed batches to its own <node>.sync and tails the files of
+// the others. replace() writes a fresh file under a new epoch; readers notice
+// the epoch change and re-read that peer from the start.
+public class FileSyncTransport implements SyncTransport {
+
+    private static final int MAGIC = 0x504C5359; // "PLSY"
+    private static final int HEADER_SIZE = 12;
+    private static final String SUFFIX = ".sync";
+
+    private final File directory;
+    private final File file;
+
+    // peer node -> how far its file has been read
+    private final Map<String, Cursor> cursors = new HashMap<>();
+
+    public FileSyncTransport(File directory, String node) {
+        this.directory = directory;
+        this.file = new File(directory, node + SUFFIX);
+        directory.mkdirs();
+    }
+
+    @Override
+    public void publish(List<ScoreBatch> batches) throws IOException {
+
+        if (batches.isEmpty()) return;
+
+        if (!file.exists()) {
+            replace(batches);
+            return;
+        }
+
+        ByteBuffer frames = ByteBuffer.wrap(frames(batches).toByteArray());
+
+        // one append per publish, so readers see whole frames or nothing new
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (frames.hasRemaining()) {
+                channel.write(frames);
+            }
+        }
+    }
+
+    @Override
+    public void replace(List<ScoreBatch> snapshot) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putLong(ThreadLocalRandom.current().nextLong() | 1);
+
+        ByteArrayOutputStream bytes = frames(snapshot);
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            ByteBuffer frames = ByteBuffer.wrap(bytes.toByteArray());
+            while (frames.hasRemaining()) channel.write(frames);
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<ScoreBatch> poll() throws IOException {
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) return List.of();
+
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        List<ScoreBatch> batches = new ArrayList<>();
+
+        for (File peer : files) {
+
+            if (peer.equals(file)) continue;
+
+            String node = peer.getName().substring(0, peer.getName().length() - SUFFIX.length());
+            read(peer, cursors.computeIfAbsent(node, key -> new Cursor()), batches);
+        }
+
+        return batches;
+    }
+
+    private void read(File peer, Cursor cursor, List<ScoreBatch> out) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(peer.toPath(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if (size < HEADER_SIZE) return;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+
+            // not ours, leave it alone
+            if (header.getInt() != MAGIC) return;
+
+            long epoch = header.getLong();
+
+            // the peer compacted its file (or it was recreated), start over
+            if (epoch != cursor.epoch || size < cursor.offset) {
+                cursor.epoch = epoch;
+                cursor.offset = HEADER_SIZE;
+            }
+
+            if (size == cursor.offset) return;
+
+            ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(size - cursor.offset));
+            readFully(channel, data, cursor.offset);
+
+            while (data.remaining() >= 4) {
+
+                int length = data.getInt(data.position());
+
+                // frame still being appended; pick it up on the next poll
+                if (length < 0 || data.remaining() < 4 + length) break;
+
+                data.getInt();
+                byte[] frame = new byte[length];
+                data.get(frame);
+
+                out.add(ScoreBatch.decode(frame));
+                cursor.offset += 4 + length;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of sync file");
+        }
+
+        buffer.flip();
+    }
+
+    private static ByteArrayOutputStream frames(List<ScoreBatch> batches) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        for (ScoreBatch batch : batches) {
+            byte[] frame = batch.encode();
+            bytes.writeBytes(ByteBuffer.allocate(4).putInt(frame.length).array());
+            bytes.writeBytes(frame);
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public void close() {}
+
+    private static final class Cursor {
+        private long epoch;
+        private long offset;
+    }
+}
@@ -0,0 +1,124 @@
+package me.perch.leaderboard;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Network-wide ranking for one board, merged from the scores every node has
+// published. Updated on the sync thread; readers get the published top list or
+// take the lock briefly for a rank lookup.
+public class GlobalRanking {
+
+    private static final int CACHE_LIMIT = 30;
+
+    public enum Merge { SUM, MAX }
+
+    private final Merge merge;
+    private final NameCache names;
+
+    // node -> that node's scores
+    private final Map<String, Map<UUID, Double>> contributions = new HashMap<>();
+    private final Map<UUID, Double> totals = new HashMap<>();
+    private final RankIndex ranking = new RankIndex();
+
+    private final AtomicReference<TopSnapshot> top = new AtomicReference<>(TopSnapshot.EMPTY);
+
+    public GlobalRanking(Merge merge, NameCache names) {
+        this.merge = merge;
+        this.names = names;
+    }
+
+    synchronized void apply(ScoreBatch batch) {
+
+        Map<UUID, Double> values = contributions.computeIfAbsent(batch.getNode(), key -> new HashMap<>());
+
+        Set<UUID> touched = new HashSet<>();
+
+        if (batch.isFull()) {
+            touched.addAll(values.keySet());
+            values.clear();
+        }
+
+        for (int row = 0; row < batch.size(); row++) {
+
+            UUID uuid = batch.getUuid(row);
+            double value = batch.getValue(row);
+
+            if (Double.isNaN(value)) {
+                values.remove(uuid);
+            } else {
+                values.put(uuid, value);
+            }
+
+            touched.add(uuid);
+        }
+
+        for (UUID uuid : touched) {
+            refresh(uuid);
+        }
+    }
+
+    private void refresh(UUID uuid) {
+
+        double merged = Double.NaN;
+
+        for (Map<UUID, Double> values : contributions.values()) {
+
+            Double value = values.get(uuid);
+            if (value == null) continue;
+
+            if (Double.isNaN(merged)) {
+                merged = value;
+            } else {
+                merged = merge == Merge.SUM ? merged + value : Math.max(merged, value);
+            }
+        }
+
+        Double old = totals.get(uuid);
+
+        if (Double.isNaN(merged)) {
+            if (old != null) {
+                totals.remove(uuid);
+                ranking.remove(uuid, old);
+            }
+            return;
+        }
+
+        if (old == null) {
+            totals.put(uuid, merged);
+            ranking.insert(uuid, merged);
+        } else if (Double.compare(old, merged) != 0) {
+            totals.put(uuid, merged);
+            ranking.update(uuid, old, merged);
+        }
+    }
+
+    synchronized void publish() {
+        top.set(TopSnapshot.of(ranking.range(1, CACHE_LIMIT), names));
+    }
+
+    public TopSnapshot getTopSnapshot() {
+
+        TopSnapshot current = top.get();
+
+        // a publish() in between wins over the refreshed copy
+        if (current.isMissingNames(names)) {
+            TopSnapshot refreshed = current.refreshNames(names);
+            return top.compareAndSet(current, refreshed) ? refreshed : top.get();
+        }
+
+        return current;
+    }
+
+    public synchronized int getRank(UUID uuid) {
+        Double value = totals.get(uuid);
+        return value != null ? ranking.rankOf(uuid, value) : 0;
+    }
+
+    public synchronized double getScore(UUID uuid) {
+        Double value = totals.get(uuid);
+        return value != null ? value : Double.NaN;
+    }
+
+    public synchronized int size() { return totals.size(); }
+    public synchronized int getNodeCount() { return contributions.size(); }
+}
@@ -0,0 +1,99 @@
+package me.perch.leaderboard;
+
+import java.util.*;
+
+// Sync between nodes in the same JVM, for local setups and for exercising the
+// sync path without a shared folder. Mirrors FileSyncTransport: each node owns
+// a log on the hub, and replace() starts a new one.
+public class InMemorySyncTransport implements SyncTransport {
+
+    private static final Hub SHARED = new Hub();
+
+    private final Hub hub;
+    private final String node;
+
+    // peer node -> how far its log has been read
+    private final Map<String, Cursor> cursors = new HashMap<>();
+
+    public InMemorySyncTransport(Hub hub, String node) {
+        this.hub = hub;
+        this.node = node;
+    }
+
+    // Hub used by the 'memory' transport setting.
+    public static Hub sharedHub() { return SHARED; }
+
+    @Override
+    public void publish(List<ScoreBatch> batches) {
+        hub.append(node, batches, false);
+    }
+
+    @Override
+    public void replace(List<ScoreBatch> snapshot) {
+        hub.append(node, snapshot, true);
+    }
+
+    @Override
+    public List<ScoreBatch> poll() {
+        return hub.read(node, cursors);
+    }
+
+    @Override
+    public void close() {}
+
+    public static final class Hub {
+
+        private final Map<String, Log> logs = new TreeMap<>();
+        private long epochs;
+
+        private synchronized void append(String node, List<ScoreBatch> batches, boolean replace) {
+
+            Log log = logs.get(node);
+
+            if (log == null || replace) {
+                log = new Log(++epochs);
+                logs.put(node, log);
+            }
+
+            log.batches.addAll(batches);
+        }
+
+        private synchronized List<ScoreBatch> read(String node, Map<String, Cursor> cursors) {
+
+            List<ScoreBatch> batches = new ArrayList<>();
+
+            for (Map.Entry<String, Log> entry : logs.entrySet()) {
+
+                if (entry.getKey().equals(node)) continue;
+
+                Log log = entry.getValue();
+                Cursor cursor = cursors.computeIfAbsent(entry.getKey(), key -> new Cursor());
+
+                if (cursor.epoch != log.epoch) {
+                    cursor.epoch = log.epoch;
+                    cursor.offset = 0;
+                }
+
+                batches.addAll(log.batches.subList(cursor.offset, log.batches.size()));
+                cursor.offset = log.batches.size();
+            }
+
+            return batches;
+        }
+    }
+
+    private static final class Log {
+
+        private final long epoch;
+        private final List<ScoreBatch> batches = new ArrayList<>();
+
+        private Log(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class Cursor {
+        private long epoch;
+        private int offset;
+    }
+}
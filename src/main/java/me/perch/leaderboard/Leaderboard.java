@@ -1,23 +1,255 @@
 package me.perch.leaderboard;
 
+import me.perch.Leaderboards;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
 public abstract class Leaderboard {
 
     protected final String name;
     protected final String type;
     protected final String description;
 
+    protected volatile boolean loaded = false;
+
+    protected final LeaderboardMetrics metrics;
+
+    // top list as of the last rebuild
+    private final AtomicReference<TopSnapshot> top = new AtomicReference<>(TopSnapshot.EMPTY);
+
+    // merged network-wide ranking, when the board is synced
+    private volatile GlobalRanking globalRanking;
+
+    // scores pushed through the API, coalesced per player until the next drain
+    private final Map<UUID, PendingScore> pending = new ConcurrentHashMap<>();
+    // set once a reload has replaced this instance; later submissions go there
+    private volatile Leaderboard successor;
+
+    // Writes to one player's scores hold that player's stripe, so samples taken
+    // on different Folia region threads merge into the board in parallel.
+    private final Object[] stripes = new Object[64];
+
     public Leaderboard(String name, String type, String description) {
         this.name = name.toLowerCase();
         this.type = type.toLowerCase();
         this.description = description;
+        this.metrics = new LeaderboardMetrics(this.name);
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Object();
     }
 
     public String getName() { return name; }
     public String getType() { return type; }
     public String getDescription() { return description; }
+    public boolean isLoaded() { return loaded; }
+    public LeaderboardMetrics getMetrics() { return metrics; }
+    public GlobalRanking getGlobalRanking() { return globalRanking; }
+
+    void setGlobalRanking(GlobalRanking globalRanking) { this.globalRanking = globalRanking; }
+
+    protected Object lockFor(UUID uuid) {
+        return stripes[(uuid.hashCode() & 0x7fffffff) % stripes.length];
+    }
 
     public abstract String getPlaceholder();
-    public abstract String getTopName(int position);
-    public abstract String getTopValue(int position);
+    // entry at a 1-based position, or null; deeper than the snapshot when the board can
+    public abstract Map.Entry<UUID, Double> getTopEntry(int position);
+    public abstract int getRank(UUID uuid);
+    public abstract int getEntryCount();
+    // rough size of the board's in-memory score table and rank index
+    public abstract long estimateHeapBytes();
+    public abstract String getScore(UUID uuid);
+    // reads the board's data; runs on a loader thread
+    public abstract void load();
+    // called on the main thread once load() has finished
+    public abstract void start();
+    // stops sampling; the final save is made by the PersistenceService
     public abstract void shutdown();
+
+    // the PersistenceService side: write the data if it changed (any thread),
+    // the seconds between periodic saves, and releasing the storage at the end
+    abstract boolean isDirty();
+    abstract void save();
+    abstract int getSaveInterval();
+    abstract void close();
+
+    public TopSnapshot getTopSnapshot() {
+
+        TopSnapshot current = top.get();
+        NameCache names = nameCache();
+
+        // names looked up since the rebuild are folded into a new snapshot, unless
+        // a rebuild has replaced the snapshot meanwhile
+        if (current.isMissingNames(names)) {
+            TopSnapshot refreshed = current.refreshNames(names);
+            return top.compareAndSet(current, refreshed) ? refreshed : top.get();
+        }
+
+        return current;
+    }
+
+    public String getTopName(int position) {
+
+        TopSnapshot current = getTopSnapshot();
+        if (position <= current.size()) return current.getName(position);
+
+        Map.Entry<UUID, Double> entry = getTopEntry(position);
+        if (entry == null) return "";
+
+        String name = nameCache().getName(entry.getKey());
+        return name != null ? name : "";
+    }
+
+    public String getTopValue(int position) {
+
+        TopSnapshot current = getTopSnapshot();
+        if (position <= current.size()) return current.getRawValue(position);
+
+        Map.Entry<UUID, Double> entry = getTopEntry(position);
+        return entry != null ? String.valueOf(entry.getValue()) : "";
+    }
+
+    public String getTopFormattedValue(int position) {
+
+        TopSnapshot current = getTopSnapshot();
+        if (position <= current.size()) return current.getFormattedValue(position);
+
+        Map.Entry<UUID, Double> entry = getTopEntry(position);
+        return entry != null ? TopSnapshot.format(entry.getValue()) : "";
+    }
+
+    // Up to count entries from a 1-based position, read from the rank index; safe
+    // off the main thread. Until the board has started only the cached top list is known.
+    public List<Map.Entry<UUID, Double>> getRange(int position, int count) {
+
+        if (loaded) return rankRange(position, count);
+
+        List<Map.Entry<UUID, Double>> entries = getTopSnapshot().getEntries();
+        if (position < 1 || position > entries.size() || count <= 0) return List.of();
+
+        return entries.subList(position - 1, Math.min(entries.size(), position - 1 + count));
+    }
+
+    protected abstract List<Map.Entry<UUID, Double>> rankRange(int position, int count);
+
+    protected void publishTop(List<Map.Entry<UUID, Double>> entries) {
+        top.set(TopSnapshot.of(entries, nameCache()));
+    }
+
+    private static NameCache nameCache() {
+        return Leaderboards.getInstance().getLeaderboardManager().getNameCache();
+    }
+
+    // Sets the player's tracked value; safe to call from any thread.
+    public void submit(UUID uuid, double value) {
+        checkFinite(value);
+
+        Leaderboard next = successor;
+        if (next != null) {
+            next.submit(uuid, value);
+            return;
+        }
+
+        pending.compute(uuid, (key, score) -> {
+            if (score == null) score = new PendingScore();
+            score.value = value;
+            score.delta = 0;
+            return score;
+        });
+
+        forwardIfReplaced(uuid);
+    }
+
+    // Adds to the player's score; safe to call from any thread.
+    public void increment(UUID uuid, double delta) {
+        checkFinite(delta);
+
+        Leaderboard next = successor;
+        if (next != null) {
+            next.increment(uuid, delta);
+            return;
+        }
+
+        pending.compute(uuid, (key, score) -> {
+            if (score == null) score = new PendingScore();
+            score.delta += delta;
+            return score;
+        });
+
+        forwardIfReplaced(uuid);
+    }
+
+    // Applies the coalesced submissions; main thread only.
+    public void drainSubmissions() {
+
+        if (pending.isEmpty() || !canApplySubmissions()) return;
+
+        boolean changed = false;
+
+        for (UUID uuid : pending.keySet()) {
+            PendingScore score = pending.remove(uuid);
+            if (score == null) continue;
+            changed |= applySubmission(uuid, score.value, score.delta);
+        }
+
+        if (changed) submissionsApplied();
+    }
+
+    protected boolean canApplySubmissions() { return loaded; }
+
+    // Moves the submissions a stopped instance never applied (it was shut down
+    // before draining them, or before it had even started) to its replacement.
+    void handOver(Leaderboard next) {
+
+        successor = next;
+
+        for (UUID uuid : pending.keySet()) {
+            PendingScore earlier = pending.remove(uuid);
+            if (earlier != null) next.receive(uuid, earlier);
+        }
+    }
+
+    // A submission that read no successor can still land in pending after
+    // handOver has drained it; it is moved on here rather than left behind.
+    private void forwardIfReplaced(UUID uuid) {
+
+        Leaderboard next = successor;
+        if (next == null) return;
+
+        PendingScore stranded = pending.remove(uuid);
+        if (stranded != null) next.receive(uuid, stranded);
+    }
+
+    private void receive(UUID uuid, PendingScore earlier) {
+
+        // anything submitted to this instance already came later
+        pending.merge(uuid, earlier, (later, ignored) -> {
+            if (Double.isNaN(later.value)) {
+                later.value = earlier.value;
+                later.delta += earlier.delta;
+            }
+            return later;
+        });
+
+        // this instance may have been replaced in turn
+        forwardIfReplaced(uuid);
+    }
+
+    // value is NaN when only increments were submitted; returns whether the score changed
+    protected abstract boolean applySubmission(UUID uuid, double value, double delta);
+    protected abstract void submissionsApplied();
+
+    private static void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Score must be a finite number: " + value);
+        }
+    }
+
+    private static final class PendingScore {
+        private double value = Double.NaN;
+        private double delta;
+    }
 }
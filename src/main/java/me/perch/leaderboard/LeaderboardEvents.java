@@ -0,0 +1,69 @@
+package me.perch.leaderboard;
+
+import jdk.jfr.*;
+
+// Custom JFR events, so sampling, rebuild and save costs show up next to the
+// server's own data in flight recordings.
+public final class LeaderboardEvents {
+
+    private LeaderboardEvents() {}
+
+    @Name("me.perch.leaderboard.SampleCycle")
+    @Label("Placeholder Sample Cycle")
+    @Category({"PerchLeaderboards"})
+    @Description("One pass of a shared placeholder over the online players")
+    public static final class SampleCycle extends Event {
+
+        @Label("Placeholder")
+        public String placeholder;
+
+        @Label("Players")
+        public int players;
+
+        @Label("PlaceholderAPI Calls")
+        public int calls;
+
+        @Label("Parse Failures")
+        public int parseFailures;
+
+        @Label("Time in PlaceholderAPI")
+        @Timespan(Timespan.NANOSECONDS)
+        public long sampleTime;
+    }
+
+    @Name("me.perch.leaderboard.Rebuild")
+    @Label("Leaderboard Rebuild")
+    @Category({"PerchLeaderboards"})
+    public static final class Rebuild extends Event {
+
+        @Label("Leaderboard")
+        public String board;
+
+        @Label("Entries")
+        public int entries;
+
+        @Label("Rebuild Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long rebuildTime;
+    }
+
+    @Name("me.perch.leaderboard.Save")
+    @Label("Leaderboard Save")
+    @Category({"PerchLeaderboards"})
+    public static final class Save extends Event {
+
+        @Label("Leaderboard")
+        public String board;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytes;
+
+        @Label("Save Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long saveTime;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+}
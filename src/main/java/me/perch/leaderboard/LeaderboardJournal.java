@@ -0,0 +1,215 @@
+package me.perch.leaderboard;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal of changed rows, layered on top of a base snapshot.
+// Each flush is written as one checksummed batch; replay stops at (and trims) the
+// first torn or corrupt batch, so a crash mid-write only loses that last flush.
+public class LeaderboardJournal {
+
+    private static final byte ROW = 1;
+    private static final byte CLEAR = 2;
+    private static final byte META = 3;
+
+    // compact once the journal is bigger than a full snapshot would be, but not below this
+    private static final long MIN_COMPACT_BYTES = 4L * 1024 * 1024;
+
+    private final File file;
+    private final int columns;
+
+    private long generation;
+
+    public LeaderboardJournal(File file, int columns) {
+        this.file = file;
+        this.columns = columns;
+    }
+
+    public synchronized void replay(Listener listener) throws IOException {
+
+        if (!file.exists()) return;
+
+        long valid = 0;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+
+            while (true) {
+
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length <= 0) break;
+
+                byte[] payload = new byte[length];
+                long checksum;
+
+                try {
+                    in.readFully(payload);
+                    checksum = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) break;
+
+                apply(ByteBuffer.wrap(payload), listener);
+                valid += 4 + length + 8;
+            }
+        }
+
+        if (valid < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private void apply(ByteBuffer buffer, Listener listener) {
+
+        while (buffer.hasRemaining()) {
+
+            byte type = buffer.get();
+
+            switch (type) {
+
+                case ROW -> {
+                    UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                    double[] row = new double[columns];
+
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = buffer.getDouble();
+                    }
+
+                    listener.onRow(uuid, row);
+                }
+
+                case CLEAR -> listener.onClear();
+
+                case META -> {
+                    long[] meta = new long[buffer.getInt()];
+
+                    for (int i = 0; i < meta.length; i++) {
+                        meta[i] = buffer.getLong();
+                    }
+
+                    listener.onMeta(meta);
+                }
+
+                default -> throw new IllegalStateException("Unknown journal record " + type);
+            }
+        }
+    }
+
+    // Appends one batch. A clear record is written first whenever the store was
+    // cleared since the previous batch.
+    public synchronized void append(ScoreStore.DirtyRows rows, long... meta) throws IOException {
+
+        boolean cleared = rows.getGeneration() != generation;
+
+        if (rows.size() == 0 && !cleared && meta.length == 0) return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + meta.length * 8 + rows.size() * (17 + columns * 8)
+        );
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        if (cleared) {
+            out.writeByte(CLEAR);
+        }
+
+        if (meta.length > 0) {
+            out.writeByte(META);
+            out.writeInt(meta.length);
+
+            for (long value : meta) {
+                out.writeLong(value);
+            }
+        }
+
+        for (int row = 0; row < rows.size(); row++) {
+
+            out.writeByte(ROW);
+            out.writeLong(rows.getMostSignificantBits(row));
+            out.writeLong(rows.getLeastSignificantBits(row));
+
+            for (int column = 0; column < columns; column++) {
+                out.writeDouble(rows.getValue(row, column));
+            }
+        }
+
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer batch = ByteBuffer.allocate(4 + payload.length + 8);
+        batch.putInt(payload.length);
+        batch.put(payload);
+        batch.putLong(crc.getValue());
+        batch.flip();
+
+        file.getParentFile().mkdirs();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+
+            long start = channel.size();
+
+            try {
+                channel.position(start);
+
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+
+                channel.force(false);
+            } catch (IOException e) {
+                // drop the torn batch so later appends stay reachable on replay
+                channel.truncate(start);
+                throw e;
+            }
+        }
+
+        generation = rows.getGeneration();
+    }
+
+    // Aligns the journal with a store that was just loaded, so the next batch
+    // does not mistake the load for a clear.
+    public synchronized void markSynced(long generation) {
+        this.generation = generation;
+    }
+
+    public synchronized boolean shouldCompact(int entries) {
+        long snapshotBytes = (long) entries * (16 + columns * 8);
+        return file.length() > Math.max(MIN_COMPACT_BYTES, snapshotBytes);
+    }
+
+    // Called once the base snapshot has been safely replaced; everything in the
+    // journal is now contained in it.
+    public synchronized void truncate() throws IOException {
+        if (!file.exists()) return;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    public interface Listener {
+        void onRow(UUID uuid, double[] row);
+        void onClear();
+        void onMeta(long[] meta);
+    }
+}
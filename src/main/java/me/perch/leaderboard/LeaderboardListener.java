@@ -0,0 +1,41 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.util.UUID;
+
+public class LeaderboardListener implements Listener {
+
+    private final Leaderboards plugin;
+
+    public LeaderboardListener(Leaderboards plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+
+        UUID uuid = event.getPlayer().getUniqueId();
+        Runnable releaseRewards = () -> {
+            RewardQueue rewards = plugin.getLeaderboardManager().getRewardQueue();
+            if (rewards != null) rewards.onJoin(uuid);
+        };
+
+        // the reward queue lives on the global thread; on Folia joins fire on the player's region
+        if (plugin.getTaskScheduler().isGlobalThread()) {
+            releaseRewards.run();
+        } else {
+            plugin.getTaskScheduler().run(releaseRewards);
+        }
+
+        for (Leaderboard leaderboard : plugin.getLeaderboardManager().getLeaderboards()) {
+            if (leaderboard instanceof TimedLeaderboard timed) {
+                timed.captureBaseline(event.getPlayer());
+            }
+        }
+    }
+}
@@ -1,147 +1,318 @@
 package me.perch.leaderboard;
 
 import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LeaderboardManager {
 
     private final Leaderboards plugin;
-    private final Map<String, Leaderboard> leaderboards = new HashMap<>();
-
-    // spacing between leaderboard update starts (in ticks)
-    private static final long STAGGER_TICKS = 10L;
+    private final Map<String, Leaderboard> leaderboards = new ConcurrentHashMap<>();
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+    // bumped whenever a leaderboard is published or removed
+    private final AtomicInteger boardsVersion = new AtomicInteger();
+    private final PlaceholderSampler sampler;
+    private final NameCache names;
+
+    private LeaderboardSync sync;
+    private RewardQueue rewards;
+    private PersistenceService persistence;
+
+    // board name -> final save and close of its previous instance; a reload
+    // does not load the board again until this has completed
+    private final Map<String, CompletableFuture<Void>> closing = new ConcurrentHashMap<>();
+    // board name -> stopped instance whose unapplied submissions go to its replacement
+    private final Map<String, Leaderboard> retired = new ConcurrentHashMap<>();
+    private final ResetScheduler resets;
+
+    private TaskScheduler.Task submissionTask;
+    private TaskScheduler.Task nameSaveTask;
 
     public LeaderboardManager(Leaderboards plugin) {
         this.plugin = plugin;
+        this.sampler = new PlaceholderSampler(plugin);
+        this.resets = new ResetScheduler(plugin);
+        this.names = new NameCache(plugin, plugin.getConfig().getInt("names.cache-size", 10000));
+        this.names.load();
     }
 
     public void loadLeaderboards() {
 
-        leaderboards.values().forEach(Leaderboard::shutdown);
-        leaderboards.clear();
+        int generation;
+        List<Leaderboard> previous;
+
+        if (persistence == null) {
+            persistence = new PersistenceService(plugin, plugin.getConfig().getInt("persistence.threads", 2));
+        }
+
+        persistence.configure(
+                plugin.getConfig().getDouble("persistence.max-saves-per-second", 4.0),
+                plugin.getConfig().getDouble("persistence.shutdown-timeout-seconds", 10.0)
+        );
+
+        synchronized (leaderboards) {
+            drainSubmissions();
+            if (sync != null) sync.shutdown();
+            previous = new ArrayList<>(leaderboards.values());
+            previous.forEach(this::retire);
+            leaderboards.clear();
+            boardsVersion.incrementAndGet();
+            generation = loadGeneration.incrementAndGet();
+        }
+
+        saveAndClose(previous);
+
+        if (submissionTask == null) {
+            submissionTask = plugin.getTaskScheduler().runTimer(this::drainSubmissions, 1L, 1L);
+        }
+
+        if (nameSaveTask == null) {
+            nameSaveTask = plugin.getTaskScheduler().runTimerAsync(names::save, 6000L, 6000L);
+        }
+
+        if (rewards == null) {
+            rewards = new RewardQueue(plugin);
+            rewards.load();
+        }
+
+        rewards.configure(
+                plugin.getConfig().getDouble("rewards.tick-budget-ms", 2.0),
+                plugin.getConfig().getBoolean("rewards.defer-offline", false)
+        );
+        rewards.start();
+        resets.start();
+
+        sync = LeaderboardSync.create(plugin, plugin.getConfig().getConfigurationSection("sync"));
+
+        sampler.configure(
+                plugin.getConfig().getDouble("sampling.tick-budget-ms", 5.0),
+                plugin.getConfig().getDouble("sampling.target-mspt", 40.0)
+        );
 
         File folder = new File(plugin.getDataFolder(), "leaderboards");
         if (!folder.exists()) folder.mkdirs();
 
         File[] files = folder.listFiles((dir, name) -> name.endsWith(".yml"));
-        if (files == null) return;
+
+        // submissions to boards that were removed from the config have nowhere to go
+        Set<String> defined = new HashSet<>();
+        if (files != null) {
+            for (File file : files) defined.add(file.getName().replace(".yml", "").toLowerCase());
+        }
+        retired.keySet().retainAll(defined);
+
+        if (files == null || files.length == 0) return;
 
         Arrays.sort(files, Comparator.comparing(File::getName));
 
-        int index = 0;
+        int threads = Math.min(files.length, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+        ExecutorService loader = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PerchLeaderboards Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         for (File file : files) {
+            loader.execute(() -> loadLeaderboard(file, generation));
+        }
+
+        loader.shutdown();
+    }
+
+    // Publishes the board as soon as its definition is parsed (serving the cached
+    // top list), loads its data on this loader thread, then starts it on the main thread.
+    private void loadLeaderboard(File file, int generation) {
 
+        Leaderboard leaderboard;
+
+        try {
+            // the previous instance must have finished writing the same files
             String name = file.getName().replace(".yml", "").toLowerCase();
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+            CompletableFuture<Void> previous = closing.get(name);
 
-            String type = config.getString("type", "simple").toLowerCase();
+            if (previous != null) {
+                // a failed close was already reported; the files are free either way
+                previous.handle((result, error) -> null).join();
+                closing.remove(name, previous);
+            }
 
-            long staggerDelay = index * STAGGER_TICKS;
+            leaderboard = createLeaderboard(file);
+            if (leaderboard == null) return;
 
-            if (type.equals("simple")) {
+            synchronized (leaderboards) {
+                if (generation != loadGeneration.get()) return;
+                leaderboards.put(leaderboard.getName(), leaderboard);
+                boardsVersion.incrementAndGet();
 
-                if (!config.contains("tasks")) {
-                    plugin.getLogger().warning("Simple leaderboard '" + name + "' has no tasks section.");
-                    continue;
-                }
+                // applied once the new instance has started
+                Leaderboard old = retired.remove(leaderboard.getName());
+                if (old != null) old.handOver(leaderboard);
+            }
 
-                List<Map<?, ?>> taskMaps = config.getMapList("tasks");
+            leaderboard.load();
 
-                if (taskMaps.isEmpty()) {
-                    plugin.getLogger().warning("Simple leaderboard '" + name + "' has empty tasks list.");
-                    continue;
-                }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to load leaderboard '" + file.getName() + "': " + e.getMessage());
+            return;
+        }
+
+        if (!plugin.isEnabled()) return;
+
+        plugin.getTaskScheduler().run(() -> {
+            if (generation != loadGeneration.get()) return;
+            if (leaderboards.get(leaderboard.getName()) != leaderboard) return;
+            leaderboard.start();
+        });
+    }
+
+    private Leaderboard createLeaderboard(File file) {
 
-                Map<?, ?> task = taskMaps.get(0);
+        String name = file.getName().replace(".yml", "").toLowerCase();
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
 
-                String placeholder = String.valueOf(task.get("placeholder"));
-                String taskDescription = String.valueOf(task.get("description"));
+        String type = config.getString("type", "simple").toLowerCase();
 
-                int update = config.getInt("update-interval", 30);
-                int save = config.getInt("save-interval", 300);
+        if (type.equals("simple")) {
 
-                leaderboards.put(name,
-                        new SimpleLeaderboard(
-                                name,
-                                taskDescription,
-                                placeholder,
-                                update,
-                                save,
-                                staggerDelay
-                        )
-                );
+            if (!config.contains("tasks")) {
+                plugin.getLogger().warning("Simple leaderboard '" + name + "' has no tasks section.");
+                return null;
             }
 
-            if (type.equals("timed")) {
+            List<Map<?, ?>> taskMaps = config.getMapList("tasks");
 
-                if (!config.contains("tasks")) {
-                    plugin.getLogger().warning("Timed leaderboard '" + name + "' has no tasks section.");
-                    continue;
-                }
+            if (taskMaps.isEmpty()) {
+                plugin.getLogger().warning("Simple leaderboard '" + name + "' has empty tasks list.");
+                return null;
+            }
 
-                List<TimedTask> tasks = new ArrayList<>();
+            Map<?, ?> task = taskMaps.get(0);
+
+            String placeholder = String.valueOf(task.get("placeholder"));
+            String taskDescription = String.valueOf(task.get("description"));
+
+            int update = config.getInt("update-interval", 30);
+            int save = config.getInt("save-interval", 300);
+            double budget = config.getDouble("sample-budget-ms", 0);
+            String statistic = readBackfillStatistic(name, config);
+            boolean synced = config.getBoolean("sync", false);
+            String storage = readStorageType(name, config);
+
+            return new SimpleLeaderboard(
+                    name,
+                    taskDescription,
+                    placeholder,
+                    update,
+                    save,
+                    budget,
+                    statistic,
+                    synced,
+                    storage
+            );
+        }
 
-                for (Map<?, ?> map : config.getMapList("tasks")) {
+        if (type.equals("timed")) {
 
-                    if (!map.containsKey("placeholder") || !map.containsKey("description")) {
-                        plugin.getLogger().warning("Invalid task in leaderboard '" + name + "'");
-                        continue;
-                    }
+            if (!config.contains("tasks")) {
+                plugin.getLogger().warning("Timed leaderboard '" + name + "' has no tasks section.");
+                return null;
+            }
 
-                    tasks.add(new TimedTask(
-                            map.get("placeholder").toString(),
-                            map.get("description").toString()
-                    ));
-                }
+            List<TimedTask> tasks = new ArrayList<>();
+
+            for (Map<?, ?> map : config.getMapList("tasks")) {
 
-                if (tasks.isEmpty()) {
-                    plugin.getLogger().warning("Timed leaderboard '" + name + "' has no valid tasks.");
+                if (!map.containsKey("placeholder") || !map.containsKey("description")) {
+                    plugin.getLogger().warning("Invalid task in leaderboard '" + name + "'");
                     continue;
                 }
 
-                Map<Integer, List<String>> rewards = new HashMap<>();
+                tasks.add(new TimedTask(
+                        map.get("placeholder").toString(),
+                        map.get("description").toString()
+                ));
+            }
+
+            if (tasks.isEmpty()) {
+                plugin.getLogger().warning("Timed leaderboard '" + name + "' has no valid tasks.");
+                return null;
+            }
 
-                if (config.contains("rewards")) {
+            Map<Integer, List<String>> rewards = new HashMap<>();
 
-                    for (String key : config.getConfigurationSection("rewards").getKeys(false)) {
+            if (config.contains("rewards")) {
 
-                        try {
-                            int position = Integer.parseInt(key);
-                            List<String> commands = config.getStringList("rewards." + key);
+                for (String key : config.getConfigurationSection("rewards").getKeys(false)) {
 
-                            if (!commands.isEmpty()) {
-                                rewards.put(position, commands);
-                            }
+                    try {
+                        int position = Integer.parseInt(key);
+                        List<String> commands = config.getStringList("rewards." + key);
 
-                        } catch (NumberFormatException e) {
-                            plugin.getLogger().warning("Invalid reward position '" + key + "' in leaderboard '" + name + "'");
+                        if (!commands.isEmpty()) {
+                            rewards.put(position, commands);
                         }
+
+                    } catch (NumberFormatException e) {
+                        plugin.getLogger().warning("Invalid reward position '" + key + "' in leaderboard '" + name + "'");
                     }
                 }
-
-                String cron = config.getString("cron", "0 0 0 1 * ?");
-                int update = config.getInt("update-interval", 30);
-                int save = config.getInt("save-interval", 300);
-
-                leaderboards.put(name,
-                        new TimedLeaderboard(
-                                name,
-                                tasks,
-                                rewards,
-                                cron,
-                                update,
-                                save,
-                                staggerDelay
-                        )
-                );
             }
 
-            index++;
+            String cron = config.getString("cron", "0 0 0 1 * ?");
+            int update = config.getInt("update-interval", 30);
+            int save = config.getInt("save-interval", 300);
+            double budget = config.getDouble("sample-budget-ms", 0);
+            String storage = readStorageType(name, config);
+
+            return new TimedLeaderboard(
+                    name,
+                    tasks,
+                    rewards,
+                    cron,
+                    update,
+                    save,
+                    budget,
+                    storage
+            );
+        }
+
+        return null;
+    }
+
+    // "<category>/<key>" of the vanilla statistic a simple board can be backfilled from
+    private String readBackfillStatistic(String name, YamlConfiguration config) {
+
+        String statistic = config.getString("backfill-statistic");
+        if (statistic == null || statistic.isBlank()) return null;
+
+        if (statistic.split("/", 2).length != 2) {
+            plugin.getLogger().warning("Invalid backfill-statistic '" + statistic + "' in leaderboard '" + name
+                    + "', expected <category>/<key> such as minecraft:custom/minecraft:play_time.");
+            return null;
         }
+
+        return statistic;
+    }
+
+    private String readStorageType(String name, YamlConfiguration config) {
+
+        String storage = config.getString("storage", "file").toLowerCase();
+
+        if (!storage.equals("file") && !storage.equals("sqlite")) {
+            plugin.getLogger().warning("Unknown storage '" + storage + "' in leaderboard '" + name + "', using file.");
+            return "file";
+        }
+
+        return storage;
     }
 
     public Leaderboard getLeaderboard(String name) {
@@ -156,12 +327,109 @@ public class LeaderboardManager {
         return leaderboards.keySet();
     }
 
+    public PlaceholderSampler getSampler() { return sampler; }
+    public NameCache getNameCache() { return names; }
+    public LeaderboardSync getSync() { return sync; }
+    public RewardQueue getRewardQueue() { return rewards; }
+
+    public PersistenceService getPersistence() { return persistence; }
+    public int getBoardsVersion() { return boardsVersion.get(); }
+
+    // Sets a player's value on a leaderboard without going through PlaceholderAPI.
+    // Thread-safe; updates are coalesced per player and applied on the next tick.
+    // For timed leaderboards the value is the player's current statistic and the
+    // earned score is measured from the period baseline, as with sampled values.
+    public boolean submit(String board, UUID uuid, double value) {
+        Leaderboard leaderboard = getLeaderboard(board);
+        if (leaderboard == null) return false;
+        leaderboard.submit(uuid, value);
+        return true;
+    }
+
+    // Adds to a player's score (the earned value on timed leaderboards). Thread-safe.
+    public boolean increment(String board, UUID uuid, double delta) {
+        Leaderboard leaderboard = getLeaderboard(board);
+        if (leaderboard == null) return false;
+        leaderboard.increment(uuid, delta);
+        return true;
+    }
+
+    private void retire(Leaderboard leaderboard) {
+        leaderboard.shutdown();
+        retired.put(leaderboard.getName(), leaderboard);
+    }
+
+    private void drainSubmissions() {
+        for (Leaderboard leaderboard : leaderboards.values()) {
+            leaderboard.drainSubmissions();
+        }
+    }
+
+    // Starts the final save of stopped boards, all in parallel. Their
+    // replacements wait for it in loadLeaderboard(), however long it takes.
+    private Map<Leaderboard, CompletableFuture<Void>> saveAndClose(List<Leaderboard> boards) {
+
+        Map<Leaderboard, CompletableFuture<Void>> saves = persistence.close(boards);
+
+        saves.forEach((board, saved) -> closing.merge(board.getName(), saved,
+                (earlier, later) -> CompletableFuture.allOf(earlier, later)));
+
+        return saves;
+    }
+
     public void shutdown() {
-        leaderboards.values().forEach(Leaderboard::shutdown);
+
+        if (submissionTask != null) {
+            submissionTask.cancel();
+            submissionTask = null;
+        }
+
+        if (nameSaveTask != null) {
+            nameSaveTask.cancel();
+            nameSaveTask = null;
+        }
+
+        drainSubmissions();
+        resets.shutdown();
+
+        if (sync != null) {
+            sync.shutdown();
+            sync = null;
+        }
+
+        List<Leaderboard> boards;
+
+        synchronized (leaderboards) {
+            boards = new ArrayList<>(leaderboards.values());
+            boards.forEach(this::retire);
+            leaderboards.clear();
+            boardsVersion.incrementAndGet();
+        }
+
+        sampler.shutdown();
+
+        if (persistence != null) {
+            // the server may be stopping: wait at most the shutdown timeout
+            persistence.await(saveAndClose(boards));
+            persistence.shutdown();
+            persistence = null;
+        }
+
+        // after the boards, so rewards queued by a last reset are logged
+        if (rewards != null) {
+            rewards.shutdown();
+            rewards = null;
+        }
+
+        names.save();
     }
 
+    // Swaps in freshly loaded boards while the persistence, reward and reset
+    // services keep running: the old boards' final saves are not waited for here
+    // (each replacement waits for its own in loadLeaderboard), so a reload never
+    // stalls the main thread. Only shutdown() waits, bounded by the timeout.
     public void reload() {
-        shutdown();
         loadLeaderboards();
+        plugin.getTaskScheduler().runAsync(names::save);
     }
 }
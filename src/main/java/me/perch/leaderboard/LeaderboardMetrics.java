@@ -0,0 +1,91 @@
+package me.perch.leaderboard;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-board counters behind /perchlb stats. "last" values describe the most
+// recent operation, the rest are totals since the board was loaded. Each
+// record also emits the matching JFR event when recording is enabled.
+public class LeaderboardMetrics {
+
+    private final String board;
+
+    private volatile long lastSampleNanos;
+    private volatile int lastSampleCalls;
+    private volatile int lastParseFailures;
+    private final AtomicLong sampleCycles = new AtomicLong();
+    private final AtomicLong sampleCalls = new AtomicLong();
+    private final AtomicLong parseFailures = new AtomicLong();
+
+    private volatile long lastRebuildNanos;
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    private volatile long lastSaveNanos;
+    private volatile long lastSaveBytes;
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong saveFailures = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public LeaderboardMetrics(String board) {
+        this.board = board;
+    }
+
+    // sampling is shared per placeholder; its JFR event is emitted by the sampler
+    void recordSampleCycle(PlaceholderSampler.Cycle cycle) {
+        lastSampleNanos = cycle.nanos();
+        lastSampleCalls = cycle.calls();
+        lastParseFailures = cycle.parseFailures();
+        sampleCycles.incrementAndGet();
+        sampleCalls.addAndGet(cycle.calls());
+        parseFailures.addAndGet(cycle.parseFailures());
+    }
+
+    void recordRebuild(long nanos, int entries) {
+
+        lastRebuildNanos = nanos;
+        rebuilds.incrementAndGet();
+
+        LeaderboardEvents.Rebuild event = new LeaderboardEvents.Rebuild();
+        if (event.isEnabled()) {
+            event.board = board;
+            event.entries = entries;
+            event.rebuildTime = nanos;
+            event.commit();
+        }
+    }
+
+    void recordSave(long nanos, long bytes, boolean succeeded) {
+
+        if (succeeded) {
+            lastSaveNanos = nanos;
+            lastSaveBytes = bytes;
+            saves.incrementAndGet();
+        } else {
+            saveFailures.incrementAndGet();
+        }
+
+        bytesWritten.addAndGet(bytes);
+
+        LeaderboardEvents.Save event = new LeaderboardEvents.Save();
+        if (event.isEnabled()) {
+            event.board = board;
+            event.bytes = bytes;
+            event.saveTime = nanos;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    public long getLastSampleNanos() { return lastSampleNanos; }
+    public int getLastSampleCalls() { return lastSampleCalls; }
+    public int getLastParseFailures() { return lastParseFailures; }
+    public long getSampleCycles() { return sampleCycles.get(); }
+    public long getSampleCalls() { return sampleCalls.get(); }
+    public long getParseFailures() { return parseFailures.get(); }
+    public long getLastRebuildNanos() { return lastRebuildNanos; }
+    public long getRebuilds() { return rebuilds.get(); }
+    public long getLastSaveNanos() { return lastSaveNanos; }
+    public long getLastSaveBytes() { return lastSaveBytes; }
+    public long getSaves() { return saves.get(); }
+    public long getSaveFailures() { return saveFailures.get(); }
+    public long getBytesWritten() { return bytesWritten.get(); }
+}
@@ -0,0 +1,200 @@
+package me.perch.leaderboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Columnar binary base snapshot: header, meta longs, then the msb, lsb and one
+// double array per value column. Loading maps the file and bulk-copies each
+// column, so there is no per-entry parsing.
+public class LeaderboardSnapshot {
+
+    private static final int MAGIC = 0x504C4253; // "PLBS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private final ScoreStore.Columns columns;
+    private final long[] meta;
+
+    private LeaderboardSnapshot(ScoreStore.Columns columns, long[] meta) {
+        this.columns = columns;
+        this.meta = meta;
+    }
+
+    public ScoreStore.Columns getColumns() { return columns; }
+    public long[] getMeta() { return meta; }
+
+    public static LeaderboardSnapshot read(File file, int columnCount) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a leaderboard snapshot: " + file.getName());
+            }
+
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file.getName());
+            }
+
+            int columnsInFile = buffer.getInt();
+            if (columnsInFile != columnCount) {
+                throw new IOException("Snapshot " + file.getName() + " has " + columnsInFile
+                        + " columns, expected " + columnCount);
+            }
+
+            int count = buffer.getInt();
+            int metaCount = buffer.getInt();
+            buffer.getInt(); // reserved
+
+            long expected = HEADER_BYTES + metaCount * 8L + count * (16L + columnCount * 8L);
+            if (count < 0 || metaCount < 0 || expected != channel.size()) {
+                throw new IOException("Truncated leaderboard snapshot: " + file.getName());
+            }
+
+            long[] meta = new long[metaCount];
+            buffer.asLongBuffer().get(meta);
+            buffer.position(buffer.position() + metaCount * 8);
+
+            long[] msb = new long[count];
+            buffer.asLongBuffer().get(msb);
+            buffer.position(buffer.position() + count * 8);
+
+            long[] lsb = new long[count];
+            buffer.asLongBuffer().get(lsb);
+            buffer.position(buffer.position() + count * 8);
+
+            double[][] values = new double[columnCount][count];
+            for (double[] column : values) {
+                buffer.asDoubleBuffer().get(column);
+                buffer.position(buffer.position() + count * 8);
+            }
+
+            return new LeaderboardSnapshot(new ScoreStore.Columns(count, msb, lsb, values), meta);
+        }
+    }
+
+    // Writes to a temp file and atomically moves it over the old snapshot.
+    public static void write(File file, ScoreStore.Columns data, long... meta) throws IOException {
+
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(data.getValues().length);
+            buffer.putInt(data.size());
+            buffer.putInt(meta.length);
+            buffer.putInt(0);
+
+            for (long value : meta) {
+                ensure(channel, buffer, 8);
+                buffer.putLong(value);
+            }
+
+            writeLongs(channel, buffer, data.getMostSignificantBits(), data.size());
+            writeLongs(channel, buffer, data.getLeastSignificantBits(), data.size());
+
+            for (double[] column : data.getValues()) {
+                for (int i = 0; i < data.size(); i++) {
+                    ensure(channel, buffer, 8);
+                    buffer.putDouble(column[i]);
+                }
+            }
+
+            flush(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Small side file with the cached top entries, read synchronously at startup so
+    // placeholders have something to show while the full data loads.
+    public static List<Map.Entry<UUID, Double>> readTop(File file) throws IOException {
+
+        List<Map.Entry<UUID, Double>> top = new ArrayList<>();
+        if (!file.exists()) return top;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a cached top file: " + file.getName());
+        }
+
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count * 24) {
+            throw new IOException("Truncated cached top file: " + file.getName());
+        }
+
+        for (int i = 0; i < count; i++) {
+            UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+            top.add(Map.entry(uuid, buffer.getDouble()));
+        }
+
+        return top;
+    }
+
+    public static void writeTop(File file, List<Map.Entry<UUID, Double>> top) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + top.size() * 24);
+        buffer.putInt(MAGIC);
+        buffer.putInt(top.size());
+
+        for (Map.Entry<UUID, Double> entry : top) {
+            buffer.putLong(entry.getKey().getMostSignificantBits());
+            buffer.putLong(entry.getKey().getLeastSignificantBits());
+            buffer.putDouble(entry.getValue());
+        }
+
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), buffer.array());
+
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeLongs(FileChannel channel, ByteBuffer buffer, long[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            ensure(channel, buffer, 8);
+            buffer.putLong(values[i]);
+        }
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
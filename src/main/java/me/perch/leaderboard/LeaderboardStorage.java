@@ -0,0 +1,33 @@
+package me.perch.leaderboard;
+
+import java.io.File;
+import java.io.IOException;
+
+// Persistence backend for a single leaderboard's ScoreStore. Boards pick one
+// through the "storage" key of their config.
+public interface LeaderboardStorage {
+
+    // true if this backend already holds data for the board
+    boolean exists();
+
+    // Loads every row into the (empty) store and returns the stored meta values.
+    long[] load(ScoreStore scores) throws IOException;
+
+    // Persists the rows changed since the last flush.
+    void flush(ScoreStore scores, long... meta) throws IOException;
+
+    // Replaces everything stored for the board with the store's current contents.
+    void writeAll(ScoreStore scores, long... meta) throws IOException;
+
+    // Total bytes written since the backend was created (for stats).
+    long getBytesWritten();
+
+    default void close() {}
+
+    static LeaderboardStorage create(String type, File dataFolder, String board, int columns) {
+        return switch (type) {
+            case "sqlite" -> new SqliteStorage(new File(dataFolder, "data/leaderboards.db"), board, columns);
+            default -> new FileStorage(new File(dataFolder, "data"), board, columns);
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Network-wide mode for boards with 'sync: true'. Every interval the main thread
+// collects the scores that changed on this server into batches; a single sync
+// thread publishes them, polls the other servers' batches and merges everything
+// into one GlobalRanking per board. A full snapshot is published when a board
+// starts and every full-sync-interval, which also compacts the transport.
+public class LeaderboardSync {
+
+    private final Leaderboards plugin;
+    private final String node;
+    private final SyncTransport transport;
+    private final GlobalRanking.Merge merge;
+    private final long fullSyncMillis;
+
+    private final Map<String, GlobalRanking> rankings = new ConcurrentHashMap<>();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PerchLeaderboards Sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TaskScheduler.Task task;
+    private long lastFullSync;
+    // set by the sync thread when a publish failed, so nothing is lost
+    private volatile boolean forceFull = false;
+
+    private LeaderboardSync(Leaderboards plugin, String node, SyncTransport transport,
+                            GlobalRanking.Merge merge, long fullSyncMillis) {
+        this.plugin = plugin;
+        this.node = node;
+        this.transport = transport;
+        this.merge = merge;
+        this.fullSyncMillis = fullSyncMillis;
+        this.lastFullSync = System.currentTimeMillis();
+    }
+
+    // Builds the sync service from the 'sync' config section; null when disabled.
+    static LeaderboardSync create(Leaderboards plugin, ConfigurationSection config) {
+
+        if (config == null || !config.getBoolean("enabled", false)) return null;
+
+        String node = config.getString("node", "");
+
+        if (node == null || !node.matches("[A-Za-z0-9_-]+")) {
+            plugin.getLogger().warning("Sync is enabled but 'sync.node' is not a valid name (letters, digits, - and _), "
+                    + "network-wide leaderboards are disabled.");
+            return null;
+        }
+
+        GlobalRanking.Merge merge;
+        try {
+            merge = GlobalRanking.Merge.valueOf(config.getString("merge", "sum").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Unknown sync merge '" + config.getString("merge") + "', using sum.");
+            merge = GlobalRanking.Merge.SUM;
+        }
+
+        String type = config.getString("transport", "file").toLowerCase(Locale.ROOT);
+        SyncTransport transport;
+
+        if (type.equals("memory")) {
+            transport = new InMemorySyncTransport(InMemorySyncTransport.sharedHub(), node);
+        } else {
+            if (!type.equals("file")) {
+                plugin.getLogger().warning("Unknown sync transport '" + type + "', using file.");
+            }
+
+            String directory = config.getString("directory", "sync");
+            File folder = new File(directory);
+            if (!folder.isAbsolute()) folder = new File(plugin.getDataFolder(), directory);
+
+            transport = new FileSyncTransport(folder, node);
+        }
+
+        long fullSyncMillis = TimeUnit.SECONDS.toMillis(Math.max(60, config.getLong("full-sync-interval", 600)));
+
+        LeaderboardSync sync = new LeaderboardSync(plugin, node, transport, merge, fullSyncMillis);
+
+        long interval = Math.max(1, config.getLong("interval-ticks", 20));
+        sync.task = plugin.getTaskScheduler().runTimer(sync::tick, interval, interval);
+
+        return sync;
+    }
+
+    public String getNode() { return node; }
+
+    public GlobalRanking getRanking(String board) {
+        return rankings.get(board);
+    }
+
+    // Main thread. Collects this server's changes and hands them to the sync thread.
+    private void tick() {
+
+        long now = System.currentTimeMillis();
+        boolean full = forceFull || now - lastFullSync >= fullSyncMillis;
+
+        if (full) {
+            forceFull = false;
+            lastFullSync = now;
+        }
+
+        List<ScoreBatch> batches = new ArrayList<>();
+
+        for (Leaderboard leaderboard : plugin.getLeaderboardManager().getLeaderboards()) {
+
+            if (!(leaderboard instanceof SimpleLeaderboard board) || !board.isSynced() || !board.isLoaded()) continue;
+
+            board.setGlobalRanking(ranking(board.getName()));
+
+            ScoreBatch batch = board.collectSync(node, full);
+            if (batch != null) batches.add(batch);
+        }
+
+        worker.execute(() -> exchange(batches, full));
+    }
+
+    private GlobalRanking ranking(String board) {
+        return rankings.computeIfAbsent(board, key -> new GlobalRanking(merge, plugin.getLeaderboardManager().getNameCache()));
+    }
+
+    // Sync thread.
+    private void exchange(List<ScoreBatch> outgoing, boolean full) {
+
+        Set<GlobalRanking> changed = new HashSet<>();
+
+        try {
+            if (full) {
+                transport.replace(outgoing);
+            } else {
+                transport.publish(outgoing);
+            }
+        } catch (IOException e) {
+            forceFull = true;
+            plugin.getLogger().warning("Could not publish leaderboard sync batch: " + e.getMessage());
+        }
+
+        // our own scores count towards the global ranking right away
+        for (ScoreBatch batch : outgoing) {
+            GlobalRanking ranking = ranking(batch.getBoard());
+            ranking.apply(batch);
+            changed.add(ranking);
+        }
+
+        try {
+            for (ScoreBatch batch : transport.poll()) {
+                GlobalRanking ranking = ranking(batch.getBoard());
+                ranking.apply(batch);
+                changed.add(ranking);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read leaderboard sync batches: " + e.getMessage());
+        }
+
+        for (GlobalRanking ranking : changed) {
+            ranking.publish();
+        }
+    }
+
+    public void shutdown() {
+
+        if (task != null) task.cancel();
+
+        // publish whatever changed since the last interval
+        tick();
+
+        worker.shutdown();
+
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        transport.close();
+    }
+}
@@ -0,0 +1,206 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded UUID -> name cache used for top-list names, so placeholders never go
+// through the server's profile lookup. Names are refreshed when a player joins;
+// ranked players that are not cached yet are resolved once off the main thread.
+// The cache is persisted to data/names.dat.
+public class NameCache implements Listener {
+
+    private static final int MAGIC = 0x504C4E43; // "PLNC"
+
+    private final Leaderboards plugin;
+    private final File file;
+    private final int capacity;
+
+    // access-ordered, so the least recently shown names are evicted first
+    private final LinkedHashMap<UUID, String> names;
+    private final Set<UUID> resolving = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean dirty = false;
+
+    // bumped whenever a name is added or changed
+    private final AtomicLong version = new AtomicLong();
+
+    public NameCache(Leaderboards plugin, int capacity) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/names.dat");
+        this.capacity = Math.max(16, capacity);
+        this.names = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                return size() > NameCache.this.capacity;
+            }
+        };
+    }
+
+    // Returns the cached name, or null while it is still being resolved.
+    public String getName(UUID uuid) {
+
+        String name = peek(uuid);
+        if (name != null) return name;
+
+        resolve(List.of(uuid));
+        return null;
+    }
+
+    // Cached or online name; never starts a lookup.
+    public String peek(UUID uuid) {
+
+        String name;
+        synchronized (names) {
+            name = names.get(uuid);
+        }
+        if (name != null) return name;
+
+        Player player = Bukkit.getPlayer(uuid);
+        if (player == null) return null;
+
+        put(uuid, player.getName());
+        return player.getName();
+    }
+
+    // Cached name, or the server's profile lookup stored for next time. Blocks,
+    // so only for callers already off the main thread.
+    public String lookup(UUID uuid) {
+
+        String name = peek(uuid);
+        if (name != null) return name;
+
+        name = Bukkit.getOfflinePlayer(uuid).getName();
+        if (name != null) put(uuid, name);
+        return name;
+    }
+
+    public long getVersion() { return version.get(); }
+
+    // Looks up the names of ranked players that are not cached yet.
+    public void resolve(Collection<UUID> uuids) {
+
+        List<UUID> missing = new ArrayList<>();
+
+        synchronized (names) {
+            for (UUID uuid : uuids) {
+                if (!names.containsKey(uuid) && resolving.add(uuid)) missing.add(uuid);
+            }
+        }
+
+        if (missing.isEmpty() || !plugin.isEnabled()) {
+            resolving.removeAll(missing);
+            return;
+        }
+
+        plugin.getTaskScheduler().runAsync(() -> {
+            for (UUID uuid : missing) {
+                try {
+                    String name = Bukkit.getOfflinePlayer(uuid).getName();
+                    if (name != null) put(uuid, name);
+                } finally {
+                    resolving.remove(uuid);
+                }
+            }
+        });
+    }
+
+    private void put(UUID uuid, String name) {
+        synchronized (names) {
+            if (name.equals(names.put(uuid, name))) return;
+        }
+        version.incrementAndGet();
+        dirty = true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        put(player.getUniqueId(), player.getName());
+    }
+
+    public void load() {
+
+        if (!file.exists()) return;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a name cache file: " + file.getName());
+            }
+
+            int count = buffer.getInt();
+
+            synchronized (names) {
+                for (int i = 0; i < count; i++) {
+                    UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                    byte[] name = new byte[buffer.get() & 0xFF];
+                    buffer.get(name);
+                    names.put(uuid, new String(name, StandardCharsets.UTF_8));
+                }
+            }
+
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Could not read name cache: " + e.getMessage());
+        }
+    }
+
+    public synchronized void save() {
+
+        if (!dirty) return;
+        dirty = false;
+
+        List<Map.Entry<UUID, byte[]>> entries = new ArrayList<>();
+        int bytes = 8;
+
+        synchronized (names) {
+            for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                byte[] name = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                if (name.length > 255) continue;
+                entries.add(Map.entry(entry.getKey(), name));
+                bytes += 17 + name.length;
+            }
+        }
+
+        // oldest first, so reloading restores the access order
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(MAGIC);
+        buffer.putInt(entries.size());
+
+        for (Map.Entry<UUID, byte[]> entry : entries) {
+            buffer.putLong(entry.getKey().getMostSignificantBits());
+            buffer.putLong(entry.getKey().getLeastSignificantBits());
+            buffer.put((byte) entry.getValue().length);
+            buffer.put(entry.getValue());
+        }
+
+        try {
+            file.getParentFile().mkdirs();
+            File temp = new File(file.getPath() + ".tmp");
+            Files.write(temp.toPath(), buffer.array());
+
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            dirty = true;
+            e.printStackTrace();
+        }
+    }
+}
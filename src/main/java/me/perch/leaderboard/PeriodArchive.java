@@ -0,0 +1,450 @@
+package me.perch.leaderboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Append-only archive of a timed board's closed periods in data/<name>.periods.
+// Each record is one deflated period (the full score table in rank order, so
+// the top-N is its prefix); data/<name>.periods.idx holds one 8-byte offset per
+// period, so period N is found with a single seek. The period's start and first
+// TOP_ROWS rows are also kept uncompressed in the record header, so the latest
+// start and top list are known without inflating a table. Records are self-delimiting
+// (magic, length, checksum): the next time the archive is opened a record that
+// was only partly appended is cut off, and an index that is missing or out of
+// step with the data is rebuilt from it.
+public class PeriodArchive {
+
+    private static final int MAGIC = 0x504C5041; // "PLPA"
+    // magic, compressed length, raw length, checksum, start, top rows
+    private static final int RECORD_HEADER = 28;
+    private static final int ROW = 24;
+
+    // rows of each period stored uncompressed ahead of its deflated table
+    public static final int TOP_ROWS = 32;
+
+    private final File dataFile;
+    private final File indexFile;
+
+    private boolean checked = false;
+
+    // of the latest period, set by check() and append()
+    private long latestStart = Long.MIN_VALUE;
+    private List<Map.Entry<UUID, Double>> latestTop = List.of();
+
+    public PeriodArchive(File dataFolder, String name) {
+        this.dataFile = new File(dataFolder, "data/" + name + ".periods");
+        this.indexFile = new File(dataFolder, "data/" + name + ".periods.idx");
+    }
+
+    // Number of archived periods.
+    public synchronized int size() throws IOException {
+        check();
+        return (int) (indexFile.length() / 8);
+    }
+
+    // Appends a closed period; its number is assigned here (1-based, in order).
+    public synchronized Period append(long start, long end, int taskIndex, List<Map.Entry<UUID, Double>> ranked)
+            throws IOException {
+
+        check();
+
+        int count = ranked.size();
+        long number = indexFile.length() / 8 + 1;
+
+        // columns compress far better than interleaved rows
+        ByteBuffer raw = ByteBuffer.allocate(32 + count * 24);
+        raw.putLong(number);
+        raw.putLong(start);
+        raw.putLong(end);
+        raw.putInt(taskIndex);
+        raw.putInt(count);
+
+        long[] msb = new long[count];
+        long[] lsb = new long[count];
+        double[] values = new double[count];
+
+        for (int row = 0; row < count; row++) {
+            Map.Entry<UUID, Double> entry = ranked.get(row);
+            msb[row] = entry.getKey().getMostSignificantBits();
+            lsb[row] = entry.getKey().getLeastSignificantBits();
+            values[row] = entry.getValue();
+        }
+
+        for (long value : msb) raw.putLong(value);
+        for (long value : lsb) raw.putLong(value);
+        for (double value : values) raw.putDouble(value);
+
+        byte[] compressed = deflate(raw.array());
+        int top = Math.min(count, TOP_ROWS);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + top * ROW + compressed.length);
+        record.putInt(MAGIC);
+        record.putInt(compressed.length);
+        record.putInt(raw.capacity());
+        record.putInt(0);
+        record.putLong(start);
+        record.putInt(top);
+
+        for (int row = 0; row < top; row++) {
+            record.putLong(msb[row]);
+            record.putLong(lsb[row]);
+            record.putDouble(values[row]);
+        }
+
+        record.put(compressed);
+
+        // the checksum covers everything after itself
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 16, record.capacity() - 16);
+        record.putInt(12, (int) crc.getValue());
+        record.flip();
+
+        dataFile.getParentFile().mkdirs();
+
+        long offset;
+
+        // the record must be on disk before the index points at it
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            offset = channel.size();
+            while (record.hasRemaining()) channel.write(record);
+            channel.force(false);
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer entry = ByteBuffer.allocate(8).putLong(offset);
+            entry.flip();
+            while (entry.hasRemaining()) channel.write(entry);
+            channel.force(false);
+        }
+
+        Period period = new Period(number, start, end, taskIndex, count, msb, lsb, values);
+
+        latestStart = start;
+        latestTop = period.top(TOP_ROWS);
+
+        return period;
+    }
+
+    // Reads period 'number' (1-based), or null if it was never archived.
+    public synchronized Period read(long number) throws IOException {
+
+        check();
+
+        long periods = indexFile.length() / 8;
+        if (number < 1 || number > periods) return null;
+
+        long offset;
+        try (FileChannel index = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            offset = readFully(index, 8, (number - 1) * 8).getLong();
+        }
+
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer header = readFully(channel, RECORD_HEADER, offset);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Corrupt archive record for period " + number);
+            }
+
+            int compressedLength = header.getInt();
+            int rawLength = header.getInt();
+            int checksum = header.getInt();
+            header.getLong();
+            int top = header.getInt();
+
+            byte[] body = readFully(channel, top * ROW + compressedLength, offset + RECORD_HEADER).array();
+
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 16, RECORD_HEADER - 16);
+            crc.update(body);
+
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in archive record for period " + number);
+            }
+
+            byte[] compressed = Arrays.copyOfRange(body, top * ROW, body.length);
+            ByteBuffer raw = ByteBuffer.wrap(inflate(compressed, rawLength));
+
+            long stored = raw.getLong();
+            long start = raw.getLong();
+            long end = raw.getLong();
+            int taskIndex = raw.getInt();
+            int count = raw.getInt();
+
+            long[] msb = new long[count];
+            long[] lsb = new long[count];
+            double[] values = new double[count];
+
+            for (int row = 0; row < count; row++) msb[row] = raw.getLong();
+            for (int row = 0; row < count; row++) lsb[row] = raw.getLong();
+            for (int row = 0; row < count; row++) values[row] = raw.getDouble();
+
+            return new Period(stored, start, end, taskIndex, count, msb, lsb, values);
+        }
+    }
+
+    public Period latest() throws IOException {
+        return read(size());
+    }
+
+    // Start of the latest archived period, or Long.MIN_VALUE if there is none.
+    public synchronized long latestStart() throws IOException {
+        check();
+        return latestStart;
+    }
+
+    // The first 'limit' rows (up to TOP_ROWS) of the latest archived period.
+    public synchronized List<Map.Entry<UUID, Double>> latestTop(int limit) throws IOException {
+        check();
+        return List.copyOf(latestTop.subList(0, Math.min(limit, latestTop.size())));
+    }
+
+    // Scans the data file for its complete records, cuts off anything after
+    // them and rewrites the index if it does not point at exactly those records.
+    // Records the index already points at are trusted; only the rest have
+    // their checksum verified.
+    private void check() throws IOException {
+
+        if (checked) return;
+
+        long[] indexed = readIndex();
+        List<Long> offsets = new ArrayList<>();
+        long valid = 0;
+
+        if (dataFile.exists()) {
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+
+                long size = channel.size();
+                long lastStart = Long.MIN_VALUE;
+                int lastTop = 0;
+
+                while (valid + RECORD_HEADER <= size) {
+
+                    ByteBuffer header = readFully(channel, RECORD_HEADER, valid);
+                    if (header.getInt() != MAGIC) break;
+
+                    int compressedLength = header.getInt();
+                    header.getInt();
+                    int checksum = header.getInt();
+                    long start = header.getLong();
+                    int top = header.getInt();
+
+                    if (compressedLength < 0 || top < 0 || top > TOP_ROWS) break;
+
+                    long length = RECORD_HEADER + (long) top * ROW + compressedLength;
+                    if (valid + length > size) break;
+
+                    int record = offsets.size();
+                    if (record >= indexed.length || indexed[record] != valid) {
+                        CRC32 crc = new CRC32();
+                        crc.update(header.array(), 16, RECORD_HEADER - 16);
+                        crc.update(readFully(channel, (int) (length - RECORD_HEADER), valid + RECORD_HEADER));
+                        if ((int) crc.getValue() != checksum) break;
+                    }
+
+                    offsets.add(valid);
+                    lastStart = start;
+                    lastTop = top;
+                    valid += length;
+                }
+
+                if (!offsets.isEmpty()) {
+                    latestStart = lastStart;
+                    latestTop = readTop(channel, offsets.get(offsets.size() - 1) + RECORD_HEADER, lastTop);
+                }
+            }
+
+            truncate(dataFile, valid);
+        }
+
+        if (!matches(indexed, offsets)) {
+            writeIndex(offsets);
+        }
+
+        checked = true;
+    }
+
+    // Whole 8-byte entries of the index; a torn last entry is left out.
+    private long[] readIndex() throws IOException {
+
+        if (!indexFile.exists()) return new long[0];
+
+        try (FileChannel index = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+
+            int periods = (int) (index.size() / 8);
+            if (periods == 0) return new long[0];
+
+            ByteBuffer entries = readFully(index, periods * 8, 0);
+            long[] offsets = new long[periods];
+            for (int i = 0; i < periods; i++) offsets[i] = entries.getLong();
+            return offsets;
+        }
+    }
+
+    private static List<Map.Entry<UUID, Double>> readTop(FileChannel channel, long position, int rows)
+            throws IOException {
+
+        ByteBuffer buffer = readFully(channel, rows * ROW, position);
+        List<Map.Entry<UUID, Double>> top = new ArrayList<>(rows);
+
+        for (int row = 0; row < rows; row++) {
+            top.add(Map.entry(new UUID(buffer.getLong(), buffer.getLong()), buffer.getDouble()));
+        }
+
+        return top;
+    }
+
+    private boolean matches(long[] indexed, List<Long> offsets) {
+
+        if (indexFile.length() != offsets.size() * 8L) return false;
+
+        for (int i = 0; i < offsets.size(); i++) {
+            if (indexed[i] != offsets.get(i)) return false;
+        }
+
+        return true;
+    }
+
+    private void writeIndex(List<Long> offsets) throws IOException {
+
+        indexFile.getParentFile().mkdirs();
+        File temp = new File(indexFile.getPath() + ".tmp");
+
+        ByteBuffer entries = ByteBuffer.allocate(offsets.size() * 8);
+        for (long offset : offsets) entries.putLong(offset);
+        entries.flip();
+
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (entries.hasRemaining()) channel.write(entries);
+            channel.force(false);
+        }
+
+        Files.move(temp.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void truncate(File file, long size) throws IOException {
+
+        if (file.length() <= size) return;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length, long position) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of archive");
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] deflate(byte[] data) {
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, data.length / 2)];
+        int length = 0;
+
+        while (!deflater.finished()) {
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static byte[] inflate(byte[] data, int rawLength) throws IOException {
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+
+        byte[] raw = new byte[rawLength];
+
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, rawLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += read;
+            }
+
+            if (length != rawLength) throw new IOException("Truncated archive record");
+
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        return raw;
+    }
+
+    // One closed period, rows in rank order.
+    public static final class Period {
+
+        private final long number;
+        private final long start;
+        private final long end;
+        private final int taskIndex;
+        private final int count;
+        private final long[] msb;
+        private final long[] lsb;
+        private final double[] values;
+
+        private Period(long number, long start, long end, int taskIndex, int count,
+                       long[] msb, long[] lsb, double[] values) {
+            this.number = number;
+            this.start = start;
+            this.end = end;
+            this.taskIndex = taskIndex;
+            this.count = count;
+            this.msb = msb;
+            this.lsb = lsb;
+            this.values = values;
+        }
+
+        public long getNumber() { return number; }
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public int getTaskIndex() { return taskIndex; }
+        public int size() { return count; }
+        public UUID getUuid(int row) { return new UUID(msb[row], lsb[row]); }
+        public double getValue(int row) { return values[row]; }
+
+        // the first 'limit' rows as top-list entries
+        public List<Map.Entry<UUID, Double>> top(int limit) {
+
+            List<Map.Entry<UUID, Double>> entries = new ArrayList<>();
+
+            for (int row = 0; row < Math.min(limit, count); row++) {
+                entries.add(Map.entry(getUuid(row), values[row]));
+            }
+
+            return entries;
+        }
+    }
+}
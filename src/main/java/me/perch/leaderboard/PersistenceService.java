@@ -0,0 +1,170 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Writes every board's data from one place. Boards register when they start;
+// a dispatcher thread hands each dirty board to a small pool of writers once
+// its save interval has passed, starting at most a configured number of saves
+// per second, so many boards changing at once never turn into a burst of disk
+// writes. However often a board changes, it is written at most once per interval
+// and never by two threads at the same time.
+public class PersistenceService {
+
+    private static final long DISPATCH_MILLIS = 50L;
+
+    private final Leaderboards plugin;
+
+    // registered board -> earliest time (millis) of its next periodic save
+    private final Map<Leaderboard, Long> nextSave = new ConcurrentHashMap<>();
+    // boards to save as soon as the rate limit allows, ahead of their interval
+    private final Set<Leaderboard> urgent = ConcurrentHashMap.newKeySet();
+    // boards queued on or being written by the pool
+    private final Set<Leaderboard> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PerchLeaderboards Save Dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService writers;
+
+    private volatile long minGapNanos;
+    private volatile long shutdownTimeoutMillis = 10_000L;
+    private long lastStart;
+
+    public PersistenceService(Leaderboards plugin, int threads) {
+        this.plugin = plugin;
+        this.writers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "PerchLeaderboards Save");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        dispatcher.scheduleWithFixedDelay(this::dispatch, DISPATCH_MILLIS, DISPATCH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // maxSavesPerSecond <= 0 leaves the writers bound only by their thread count
+    public void configure(double maxSavesPerSecond, double shutdownTimeoutSeconds) {
+        this.minGapNanos = maxSavesPerSecond > 0 ? (long) (1_000_000_000L / maxSavesPerSecond) : 0;
+        this.shutdownTimeoutMillis = (long) (Math.max(0, shutdownTimeoutSeconds) * 1000L);
+    }
+
+    public void register(Leaderboard board) {
+        nextSave.put(board, System.currentTimeMillis() + board.getSaveInterval() * 1000L);
+    }
+
+    public void unregister(Leaderboard board) {
+        nextSave.remove(board);
+        urgent.remove(board);
+    }
+
+    // Saves the board without waiting for its interval, e.g. right after a reset.
+    public void saveSoon(Leaderboard board) {
+        if (nextSave.containsKey(board)) urgent.add(board);
+    }
+
+    private void dispatch() {
+
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<Leaderboard, Long> entry : nextSave.entrySet()) {
+
+            Leaderboard board = entry.getKey();
+            boolean asked = urgent.contains(board);
+
+            if (!asked && now < entry.getValue()) continue;
+            if (!board.isDirty()) continue;
+
+            // still being written; a change made meanwhile waits for the next turn
+            if (inFlight.contains(board)) continue;
+
+            long start = System.nanoTime();
+            if (lastStart != 0 && start - lastStart < minGapNanos) return;
+            lastStart = start;
+
+            urgent.remove(board);
+            entry.setValue(now + board.getSaveInterval() * 1000L);
+            inFlight.add(board);
+
+            writers.execute(() -> {
+                try {
+                    board.save();
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Could not save leaderboard '" + board.getName() + "': " + e.getMessage());
+                    e.printStackTrace();
+                } finally {
+                    inFlight.remove(board);
+                }
+            });
+        }
+    }
+
+    // Final save of stopped boards, all in parallel. Each board's storage is
+    // closed right after its own save, and its future completes then.
+    public Map<Leaderboard, CompletableFuture<Void>> close(Collection<Leaderboard> boards) {
+
+        if (boards.isEmpty()) return Map.of();
+
+        int threads = Math.min(boards.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PerchLeaderboards Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Map<Leaderboard, CompletableFuture<Void>> closing = new HashMap<>();
+
+        for (Leaderboard board : boards) {
+            closing.put(board, CompletableFuture.runAsync(() -> {
+                try {
+                    // waits for a periodic save of the same board that is still running
+                    board.save();
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Could not save leaderboard '" + board.getName() + "': " + e.getMessage());
+                    e.printStackTrace();
+                }
+                board.close();
+            }, pool));
+        }
+
+        pool.shutdown();
+        return closing;
+    }
+
+    // Waits for close() to finish or the shutdown timeout to pass. Boards still
+    // writing by then finish on their own (daemon) threads.
+    public void await(Map<Leaderboard, CompletableFuture<Void>> closing) {
+
+        if (closing.isEmpty()) return;
+
+        try {
+            CompletableFuture.allOf(closing.values().toArray(new CompletableFuture[0]))
+                    .get(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            List<String> pending = closing.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isDone())
+                    .map(entry -> entry.getKey().getName())
+                    .sorted()
+                    .toList();
+            plugin.getLogger().warning(pending.size() + " leaderboard(s) did not finish saving within "
+                    + shutdownTimeoutMillis + " ms: " + pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        // running saves are left to finish; close() waits for them through the board
+        writers.shutdown();
+        nextSave.clear();
+        urgent.clear();
+    }
+}
@@ -0,0 +1,363 @@
+package me.perch.leaderboard;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Single tick-driven sampler shared by every leaderboard. Boards subscribe to a
+// placeholder; each distinct placeholder is resolved once per online player per
+// cycle and the parsed value is handed to every subscriber. Each tick the sampler
+// works through pending players until its time budget is spent; the budget shrinks
+// when the server's MSPT rises above the target.
+//
+// On Folia there is no single thread that may read every player, so a cycle
+// instead queues one task per player on the region that owns them. Regions
+// evaluate their players in parallel and the results merge into the boards as
+// they arrive; the tick budget does not apply there.
+public class PlaceholderSampler {
+
+    // delay before a newly subscribed placeholder is sampled for the first time
+    private static final long FIRST_RUN_DELAY = 20L;
+
+    private static final double TICK_MS = 50.0;
+
+    // weight of the newest measurement in the per-call cost average
+    private static final double COST_SMOOTHING = 0.2;
+
+    // a Folia cycle spreads its player tasks over up to this many ticks
+    private static final long REGION_SPREAD_TICKS = 20L;
+
+    private final Leaderboards plugin;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    private TaskScheduler.Task task;
+    private long tick = 0;
+
+    private double tickBudgetMs = 5.0;
+    private double targetMspt = 40.0;
+
+    public PlaceholderSampler(Leaderboards plugin) {
+        this.plugin = plugin;
+    }
+
+    public void configure(double tickBudgetMs, double targetMspt) {
+        this.tickBudgetMs = Math.max(0, tickBudgetMs);
+        this.targetMspt = Math.min(TICK_MS - 1, Math.max(0, targetMspt));
+    }
+
+    // budgetMs <= 0 leaves the subscriber bound only by the global tick budget
+    public Subscription subscribe(String placeholder, int intervalSeconds, double budgetMs, SampleListener listener) {
+
+        Group group = groups.computeIfAbsent(placeholder, key -> new Group(key, tick + FIRST_RUN_DELAY));
+        Subscription subscription = new Subscription(
+                group,
+                Math.max(1, intervalSeconds) * 20L,
+                budgetMs > 0 ? (long) (budgetMs * 1_000_000L) : Long.MAX_VALUE,
+                listener
+        );
+        group.subscribers.add(subscription);
+
+        if (task == null) {
+            task = plugin.getTaskScheduler().runTimer(this::tick, 1L, 1L);
+        }
+
+        return subscription;
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        groups.clear();
+    }
+
+    private void tick() {
+
+        tick++;
+
+        boolean regionized = plugin.getTaskScheduler().isRegionized();
+        List<Group> active = new ArrayList<>();
+
+        for (Group group : groups.values()) {
+
+            if (group.subscribers.isEmpty()) {
+                groups.remove(group.placeholder, group);
+                continue;
+            }
+
+            if (group.players == null) {
+                if (tick < group.nextRun) continue;
+                group.startCycle();
+                if (regionized) group.dispatch(plugin.getTaskScheduler());
+            }
+
+            // on Folia the cycle is in the hands of the region threads
+            if (!regionized) active.add(group);
+        }
+
+        if (active.isEmpty()) return;
+
+        long start = System.nanoTime();
+        long deadline = start + tickBudgetNanos();
+
+        // rotate the starting group so a busy placeholder cannot starve the others;
+        // the first group always gets one call so sampling progresses under load
+        int offset = (int) (tick % active.size());
+
+        for (int i = 0; i < active.size(); i++) {
+
+            Group group = active.get((offset + i) % active.size());
+            long now = System.nanoTime();
+
+            if (i > 0 && now >= deadline) break;
+
+            long groupDeadline = group.budget == Long.MAX_VALUE
+                    ? deadline
+                    : Math.min(deadline, now + group.budget);
+
+            group.process(groupDeadline, i == 0);
+        }
+    }
+
+    private long tickBudgetNanos() {
+
+        double budget = tickBudgetMs;
+        double mspt = Bukkit.getAverageTickTime();
+
+        if (mspt > targetMspt) {
+            // shrink linearly to nothing as the average tick approaches 50 ms
+            budget *= Math.max(0, (TICK_MS - mspt) / (TICK_MS - targetMspt));
+        }
+
+        return (long) (budget * 1_000_000L);
+    }
+
+    // Parses a PlaceholderAPI result; returns NaN if it is not a number.
+    static double parse(String result) {
+        if (result == null) return Double.NaN;
+        try {
+            return Double.parseDouble(result.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private final class Group {
+
+        private final String placeholder;
+        private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+
+        private long nextRun;
+        private long cycleStart;
+        private long interval;
+        private long budget;
+
+        // smoothed cost of one placeholder call in nanoseconds
+        private double cost;
+
+        private List<UUID> players;
+        private int index;
+        private int sampled;
+        private int calls;
+        private int parseFailures;
+        private long nanos;
+
+        private Group(String placeholder, long nextRun) {
+            this.placeholder = placeholder;
+            this.nextRun = nextRun;
+        }
+
+        private void startCycle() {
+
+            interval = Long.MAX_VALUE;
+            budget = Long.MAX_VALUE;
+            for (Subscription subscription : subscribers) {
+                interval = Math.min(interval, subscription.interval);
+                budget = Math.min(budget, subscription.budget);
+            }
+
+            cycleStart = tick;
+            index = 0;
+            sampled = 0;
+            calls = 0;
+            parseFailures = 0;
+            nanos = 0;
+
+            players = new ArrayList<>();
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                players.add(player.getUniqueId());
+            }
+        }
+
+        private void process(long deadline, boolean force) {
+
+            boolean called = false;
+
+            while (index < players.size()) {
+
+                long now = System.nanoTime();
+
+                // stop before a call that is expected to overrun the deadline
+                if ((called || !force) && now + (long) cost > deadline) return;
+
+                Player player = Bukkit.getPlayer(players.get(index++));
+                if (player == null) continue;
+
+                String result = PlaceholderAPI.setPlaceholders(player, placeholder);
+
+                long spent = System.nanoTime() - now;
+                cost = cost == 0 ? spent : cost + (spent - cost) * COST_SMOOTHING;
+                called = true;
+
+                calls++;
+                nanos += spent;
+
+                double value = parse(result);
+                if (Double.isNaN(value)) {
+                    parseFailures++;
+                    continue;
+                }
+
+                sampled++;
+
+                for (Subscription subscription : subscribers) {
+                    subscription.listener.onSample(player, value);
+                }
+            }
+
+            finish(new Cycle(placeholder, players.size(), calls, parseFailures, sampled, nanos));
+        }
+
+        // Folia: queues every player of the cycle on their own region; the last
+        // task to finish (or be retired with its player) completes the cycle
+        // back on the global region.
+        private void dispatch(TaskScheduler scheduler) {
+
+            RegionCycle cycle = new RegionCycle(players.size());
+
+            if (players.isEmpty()) {
+                finish(cycle.toCycle(placeholder));
+                return;
+            }
+
+            long spread = Math.max(1, Math.min(interval, REGION_SPREAD_TICKS));
+
+            Runnable done = () -> {
+                if (cycle.remaining.decrementAndGet() == 0) {
+                    scheduler.run(() -> finish(cycle.toCycle(placeholder)));
+                }
+            };
+
+            for (int i = 0; i < players.size(); i++) {
+
+                Player player = Bukkit.getPlayer(players.get(i));
+
+                if (player == null || !scheduler.runFor(player, () -> {
+                    sample(player, cycle);
+                    done.run();
+                }, done, 1 + i % spread)) {
+                    done.run();
+                }
+            }
+        }
+
+        // runs on the player's region thread, concurrently with other regions
+        private void sample(Player player, RegionCycle cycle) {
+
+            long start = System.nanoTime();
+            String result = PlaceholderAPI.setPlaceholders(player, placeholder);
+
+            cycle.nanos.add(System.nanoTime() - start);
+            cycle.calls.increment();
+
+            double value = parse(result);
+            if (Double.isNaN(value)) {
+                cycle.parseFailures.increment();
+                return;
+            }
+
+            cycle.sampled.increment();
+
+            for (Subscription subscription : subscribers) {
+                subscription.listener.onSample(player, value);
+            }
+        }
+
+        private void finish(Cycle cycle) {
+
+            LeaderboardEvents.SampleCycle event = new LeaderboardEvents.SampleCycle();
+            if (event.isEnabled()) {
+                event.placeholder = placeholder;
+                event.players = cycle.players();
+                event.calls = cycle.calls();
+                event.parseFailures = cycle.parseFailures();
+                event.sampleTime = cycle.nanos();
+                event.commit();
+            }
+
+            for (Subscription subscription : subscribers) {
+                subscription.listener.onCycleComplete(cycle);
+            }
+
+            players = null;
+            nextRun = cycleStart + interval;
+        }
+    }
+
+    public static final class Subscription {
+
+        private final Group group;
+        private final long interval;
+        private final long budget;
+        private final SampleListener listener;
+
+        private Subscription(Group group, long interval, long budget, SampleListener listener) {
+            this.group = group;
+            this.interval = interval;
+            this.budget = budget;
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            group.subscribers.remove(this);
+        }
+    }
+
+    // counters of a cycle running on Folia's region threads
+    private static final class RegionCycle {
+
+        private final int players;
+        private final AtomicInteger remaining;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder parseFailures = new LongAdder();
+        private final LongAdder sampled = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private RegionCycle(int players) {
+            this.players = players;
+            this.remaining = new AtomicInteger(players);
+        }
+
+        private Cycle toCycle(String placeholder) {
+            return new Cycle(placeholder, players, calls.intValue(), parseFailures.intValue(),
+                    sampled.intValue(), nanos.sum());
+        }
+    }
+
+    // nanos is the time spent inside PlaceholderAPI over the whole cycle
+    public record Cycle(String placeholder, int players, int calls, int parseFailures, int sampled, long nanos) {}
+
+    public interface SampleListener {
+        void onSample(Player player, double value);
+        void onCycleComplete(Cycle cycle);
+    }
+}
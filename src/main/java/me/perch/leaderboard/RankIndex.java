@@ -0,0 +1,297 @@
+package me.perch.leaderboard;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Order-statistic treap keyed by (score desc, uuid), so a single score change
+// costs O(log n) and top / rank lookups never need to sort the whole board.
+public class RankIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SplittableRandom random = new SplittableRandom();
+
+    private Node root;
+
+    public void insert(UUID uuid, double score) {
+        lock.writeLock().lock();
+        try {
+            Node node = new Node(
+                    uuid.getMostSignificantBits(),
+                    uuid.getLeastSignificantBits(),
+                    score,
+                    random.nextInt()
+            );
+            root = insert(root, node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID uuid, double score) {
+        lock.writeLock().lock();
+        try {
+            root = remove(root, score,
+                    uuid.getMostSignificantBits(),
+                    uuid.getLeastSignificantBits());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(UUID uuid, double oldScore, double newScore) {
+
+        if (Double.compare(oldScore, newScore) == 0) return;
+
+        lock.writeLock().lock();
+        try {
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+
+            root = remove(root, oldScore, msb, lsb);
+            root = insert(root, new Node(msb, lsb, newScore, random.nextInt()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Approximate bytes held by the tree nodes (two longs, a double, two ints and
+    // two references each, plus the object header).
+    public long estimateHeapBytes() {
+        return size() * 56L;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 1-based position of the entry, or 0 if it is not indexed
+    public int rankOf(UUID uuid, double score) {
+
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        lock.readLock().lock();
+        try {
+            int before = 0;
+            Node node = root;
+
+            while (node != null) {
+                int cmp = compare(score, msb, lsb, node);
+
+                if (cmp == 0) return before + size(node.left) + 1;
+
+                if (cmp < 0) {
+                    node = node.left;
+                } else {
+                    before += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // entry at the 1-based position, or null if out of range
+    public Map.Entry<UUID, Double> get(int position) {
+        lock.readLock().lock();
+        try {
+            Node node = select(root, position - 1);
+            return node != null ? node.toEntry() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // up to count entries starting at the 1-based position
+    public List<Map.Entry<UUID, Double>> range(int fromPosition, int count) {
+
+        if (fromPosition < 1 || count <= 0) return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            int end = Math.min(size(root), fromPosition - 1 + count);
+            List<Map.Entry<UUID, Double>> result =
+                    new ArrayList<>(Math.max(0, end - fromPosition + 1));
+
+            collect(root, fromPosition - 1, end, 0, result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // in-order walk that only descends into subtrees overlapping [from, to)
+    private void collect(Node node, int from, int to, int offset, List<Map.Entry<UUID, Double>> out) {
+
+        if (node == null || from >= to) return;
+
+        int leftSize = size(node.left);
+        int nodeIndex = offset + leftSize;
+
+        if (from < nodeIndex) {
+            collect(node.left, from, to, offset, out);
+        }
+
+        if (nodeIndex >= from && nodeIndex < to) {
+            out.add(node.toEntry());
+        }
+
+        if (to > nodeIndex + 1) {
+            collect(node.right, from, to, nodeIndex + 1, out);
+        }
+    }
+
+    private Node select(Node node, int index) {
+
+        while (node != null) {
+            int leftSize = size(node.left);
+
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+
+        return null;
+    }
+
+    private Node insert(Node node, Node added) {
+
+        if (node == null) return added;
+
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.score, added.msb, added.lsb);
+            added.left = parts[0];
+            added.right = parts[1];
+            added.recalc();
+            return added;
+        }
+
+        if (compare(added.score, added.msb, added.lsb, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+
+        node.recalc();
+        return node;
+    }
+
+    private Node remove(Node node, double score, long msb, long lsb) {
+
+        if (node == null) return null;
+
+        int cmp = compare(score, msb, lsb, node);
+
+        if (cmp == 0) return merge(node.left, node.right);
+
+        if (cmp < 0) {
+            node.left = remove(node.left, score, msb, lsb);
+        } else {
+            node.right = remove(node.right, score, msb, lsb);
+        }
+
+        node.recalc();
+        return node;
+    }
+
+    // splits into keys ordered before the given key and keys ordered at or after it
+    private Node[] split(Node node, double score, long msb, long lsb) {
+
+        if (node == null) return new Node[2];
+
+        if (compare(score, msb, lsb, node) <= 0) {
+            Node[] parts = split(node.left, score, msb, lsb);
+            node.left = parts[1];
+            node.recalc();
+            parts[1] = node;
+            return parts;
+        }
+
+        Node[] parts = split(node.right, score, msb, lsb);
+        node.right = parts[0];
+        node.recalc();
+        parts[0] = node;
+        return parts;
+    }
+
+    private Node merge(Node left, Node right) {
+
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.recalc();
+            return left;
+        }
+
+        right.left = merge(left, right.left);
+        right.recalc();
+        return right;
+    }
+
+    // negative when the key ranks above the node (higher score first, then uuid)
+    private static int compare(double score, long msb, long lsb, Node node) {
+
+        int cmp = Double.compare(node.score, score);
+        if (cmp != 0) return cmp;
+
+        cmp = Long.compare(msb, node.msb);
+        if (cmp != 0) return cmp;
+
+        return Long.compare(lsb, node.lsb);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+
+        private final long msb;
+        private final long lsb;
+        private final double score;
+        private final int priority;
+
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long msb, long lsb, double score, int priority) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.score = score;
+            this.priority = priority;
+        }
+
+        private void recalc() {
+            size = 1 + size(left) + size(right);
+        }
+
+        private Map.Entry<UUID, Double> toEntry() {
+            return Map.entry(new UUID(msb, lsb), score);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
+
+import java.time.Instant;
+
+// Fires timed board resets at their precomputed times, whether or not anyone
+// is online to be sampled. Each tick only compares those times with the clock;
+// the cron is evaluated once per period by the board itself. A reset that
+// passed while the server was down is caught up once the board has started.
+public class ResetScheduler {
+
+    // resets this far overdue are reported as missed rather than just late
+    private static final long MISSED_AFTER_MILLIS = 60_000L;
+
+    private final Leaderboards plugin;
+    private TaskScheduler.Task task;
+
+    public ResetScheduler(Leaderboards plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        if (task == null) {
+            task = plugin.getTaskScheduler().runTimer(this::tick, 1L, 1L);
+        }
+    }
+
+    private void tick() {
+
+        long now = System.currentTimeMillis();
+
+        for (Leaderboard leaderboard : plugin.getLeaderboardManager().getLeaderboards()) {
+
+            if (!(leaderboard instanceof TimedLeaderboard timed) || !timed.isLoaded()) continue;
+
+            long due = timed.getNextReset();
+            if (due > now) continue;
+
+            if (now - due > MISSED_AFTER_MILLIS) {
+                plugin.getLogger().info("Leaderboard '" + timed.getName() + "' missed its reset at "
+                        + Instant.ofEpochMilli(due) + ", resetting now.");
+            }
+
+            timed.rollover(now);
+        }
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package me.perch.leaderboard;
+
+import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Reward commands of closed periods, run on the main thread under a per-tick
+// time budget. Every command is logged to data/rewards.log when queued and
+// again when it has run, so commands still pending when the server stops are
+// replayed on the next start (a crash right after a dispatch can repeat that
+// one command). Each board's rewards are tagged with the start of the period
+// they close, so a reset that fires again after a crash pays nothing twice.
+// Rewards for offline winners can be held until they join.
+public class RewardQueue {
+
+    private static final byte ADD = 1;
+    private static final byte DONE = 2;
+    private static final byte PERIOD = 3;
+
+    private final Leaderboards plugin;
+    private final File file;
+
+    private final Deque<Reward> pending = new ArrayDeque<>();
+    // offline winner -> rewards held until they join
+    private final Map<UUID, List<Reward>> deferred = new HashMap<>();
+    // board -> start of the last period whose rewards were queued
+    private final Map<String, Long> periods = new HashMap<>();
+
+    // log writes happen here, in order, off the main thread
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PerchLeaderboards Rewards");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DataOutputStream log;
+    private long nextId = 1;
+
+    private long budgetNanos = 2_000_000L;
+    private boolean deferOffline = false;
+    private TaskScheduler.Task task;
+
+    public RewardQueue(Leaderboards plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "data/rewards.log");
+    }
+
+    public void configure(double tickBudgetMs, boolean deferOffline) {
+        this.budgetNanos = (long) (Math.max(0, tickBudgetMs) * 1_000_000L);
+        this.deferOffline = deferOffline;
+
+        // held rewards go back through the queue and are re-checked
+        if (!deferOffline && !deferred.isEmpty()) {
+            deferred.values().forEach(pending::addAll);
+            deferred.clear();
+        }
+    }
+
+    public void start() {
+        if (task == null) {
+            task = plugin.getTaskScheduler().runTimer(this::drain, 1L, 1L);
+        }
+    }
+
+    // Replays the log and rewrites it with only the pending rewards.
+    public void load() {
+
+        Map<Long, Reward> rewards = new LinkedHashMap<>();
+
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+                while (true) {
+
+                    int type = in.read();
+                    if (type < 0) break;
+
+                    if (type == PERIOD) {
+                        periods.merge(in.readUTF(), in.readLong(), Math::max);
+                        continue;
+                    }
+
+                    long id = in.readLong();
+                    nextId = Math.max(nextId, id + 1);
+
+                    if (type == ADD) {
+                        rewards.put(id, new Reward(id, in.readUTF(), new UUID(in.readLong(), in.readLong()),
+                                in.readInt(), in.readDouble(), in.readUTF()));
+                    } else if (type == DONE) {
+                        rewards.remove(id);
+                    } else {
+                        throw new IOException("Unknown record type " + type);
+                    }
+                }
+
+            } catch (EOFException e) {
+                // the last record was cut off mid-write; everything before it stands
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not fully read the reward log: " + e.getMessage());
+            }
+        }
+
+        pending.addAll(rewards.values());
+
+        try {
+            file.getParentFile().mkdirs();
+            File temp = new File(file.getPath() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                for (Map.Entry<String, Long> period : periods.entrySet()) {
+                    writePeriod(out, period.getKey(), period.getValue());
+                }
+                for (Reward reward : pending) writeAdd(out, reward);
+            }
+
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not open the reward log, rewards will not survive a restart: " + e.getMessage());
+        }
+
+        if (!pending.isEmpty()) {
+            plugin.getLogger().info("Resuming " + pending.size() + " pending reward commands.");
+        }
+    }
+
+    // Main thread. Queues the commands for the winners of the period of 'board'
+    // that started at 'start'; false if that period was already rewarded.
+    public boolean enqueue(String board, long start, List<Winner> winners) {
+
+        Long last = periods.get(board);
+        if (last != null && last >= start) return false;
+
+        periods.put(board, start);
+
+        List<Reward> added = new ArrayList<>();
+
+        for (Winner winner : winners) {
+            for (String command : winner.commands()) {
+                Reward reward = new Reward(nextId++, board, winner.uuid(), winner.position(), winner.score(), command);
+                pending.add(reward);
+                added.add(reward);
+            }
+        }
+
+        // the marker goes first, so a torn write can lose a reward but never repeat one
+        write(out -> {
+            writePeriod(out, board, start);
+            for (Reward reward : added) writeAdd(out, reward);
+        });
+
+        return true;
+    }
+
+    public int size() {
+        int held = 0;
+        for (List<Reward> rewards : deferred.values()) held += rewards.size();
+        return pending.size() + held;
+    }
+
+    // Main thread. Moves a joining player's held rewards to the front of the queue.
+    public void onJoin(UUID uuid) {
+
+        List<Reward> held = deferred.remove(uuid);
+        if (held == null) return;
+
+        for (int i = held.size() - 1; i >= 0; i--) {
+            pending.addFirst(held.get(i));
+        }
+    }
+
+    private void drain() {
+
+        if (pending.isEmpty()) return;
+
+        long deadline = System.nanoTime() + budgetNanos;
+        List<Long> done = new ArrayList<>();
+
+        // at least one command per tick, so a busy server still pays out
+        do {
+            Reward reward = pending.poll();
+            if (reward == null) break;
+
+            Player online = Bukkit.getPlayer(reward.uuid());
+
+            if (deferOffline && online == null) {
+                deferred.computeIfAbsent(reward.uuid(), key -> new ArrayList<>()).add(reward);
+                continue;
+            }
+
+            dispatch(reward, online);
+            done.add(reward.id());
+
+        } while (System.nanoTime() < deadline);
+
+        if (!done.isEmpty()) {
+            write(out -> {
+                for (long id : done) {
+                    out.writeByte(DONE);
+                    out.writeLong(id);
+                }
+            });
+        }
+    }
+
+    private void dispatch(Reward reward, Player online) {
+
+        String playerName = online != null ? online.getName()
+                : plugin.getLeaderboardManager().getNameCache().peek(reward.uuid());
+
+        if (playerName == null) playerName = Bukkit.getOfflinePlayer(reward.uuid()).getName();
+
+        if (playerName == null) {
+            plugin.getLogger().warning("Skipping reward for position " + reward.position() + " of leaderboard '"
+                    + reward.board() + "': unknown player " + reward.uuid());
+            return;
+        }
+
+        String parsed = reward.command()
+                .replace("{player}", playerName)
+                .replace("{position}", String.valueOf(reward.position()))
+                .replace("{score}", String.valueOf(reward.score()));
+
+        try {
+            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), parsed);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Reward command failed for leaderboard '" + reward.board() + "': " + parsed);
+            e.printStackTrace();
+        }
+    }
+
+    private void write(LogWriter action) {
+
+        if (log == null) return;
+
+        writer.execute(() -> {
+            try {
+                action.write(log);
+                log.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static void writeAdd(DataOutputStream out, Reward reward) throws IOException {
+        out.writeByte(ADD);
+        out.writeLong(reward.id());
+        out.writeUTF(reward.board());
+        out.writeLong(reward.uuid().getMostSignificantBits());
+        out.writeLong(reward.uuid().getLeastSignificantBits());
+        out.writeInt(reward.position());
+        out.writeDouble(reward.score());
+        out.writeUTF(reward.command());
+    }
+
+    private static void writePeriod(DataOutputStream out, String board, long start) throws IOException {
+        out.writeByte(PERIOD);
+        out.writeUTF(board);
+        out.writeLong(start);
+    }
+
+    public void shutdown() {
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        writer.shutdown();
+
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            if (log != null) log.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private interface LogWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public record Winner(UUID uuid, int position, double score, List<String> commands) {}
+
+    private record Reward(long id, String board, UUID uuid, int position, double score, String command) {}
+}
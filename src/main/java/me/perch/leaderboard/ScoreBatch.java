@@ -0,0 +1,86 @@
+package me.perch.leaderboard;
+
+import java.io.*;
+import java.util.UUID;
+
+// A node's scores for one board as exchanged over a SyncTransport. Values are
+// the node's absolute scores, so replaying a batch is harmless; a full batch
+// replaces everything the node published for the board before. NaN removes a player.
+public final class ScoreBatch {
+
+    private final String node;
+    private final String board;
+    private final boolean full;
+    private final int count;
+    private final long[] msb;
+    private final long[] lsb;
+    private final double[] values;
+
+    public ScoreBatch(String node, String board, boolean full, int count, long[] msb, long[] lsb, double[] values) {
+        this.node = node;
+        this.board = board;
+        this.full = full;
+        this.count = count;
+        this.msb = msb;
+        this.lsb = lsb;
+        this.values = values;
+    }
+
+    public String getNode() { return node; }
+    public String getBoard() { return board; }
+    public boolean isFull() { return full; }
+    public int size() { return count; }
+    public UUID getUuid(int row) { return new UUID(msb[row], lsb[row]); }
+    public double getValue(int row) { return values[row]; }
+
+    public byte[] encode() {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + count * 24);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+
+            out.writeUTF(node);
+            out.writeUTF(board);
+            out.writeBoolean(full);
+            out.writeInt(count);
+
+            for (int row = 0; row < count; row++) {
+                out.writeLong(msb[row]);
+                out.writeLong(lsb[row]);
+                out.writeDouble(values[row]);
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static ScoreBatch decode(byte[] data) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+
+            String node = in.readUTF();
+            String board = in.readUTF();
+            boolean full = in.readBoolean();
+            int count = in.readInt();
+
+            if (count < 0 || count > (data.length / 24)) {
+                throw new IOException("Corrupt score batch: " + count + " rows");
+            }
+
+            long[] msb = new long[count];
+            long[] lsb = new long[count];
+            double[] values = new double[count];
+
+            for (int row = 0; row < count; row++) {
+                msb[row] = in.readLong();
+                lsb[row] = in.readLong();
+                values[row] = in.readDouble();
+            }
+
+            return new ScoreBatch(node, board, full, count, msb, lsb, values);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package me.perch.leaderboard;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+// Open-addressing UUID -> double[columns] table backed by primitive arrays.
+// A missing column reads as NaN. Writes are exclusive, reads are optimistic
+// and only fall back to a read lock if they raced with a write.
+public class ScoreStore {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private final int columns;
+    private final StampedLock lock = new StampedLock();
+
+    private Table table;
+    private int size;
+    private long generation;
+
+    // keys removed since the last drain, so the journal can record them
+    private long[] removed = new long[0];
+    private int removedCount;
+
+    public ScoreStore(int columns) {
+        if (columns <= 0) throw new IllegalArgumentException("Score store needs at least one column.");
+        this.columns = columns;
+        this.table = new Table(MIN_CAPACITY, columns);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int result = size;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return result;
+    }
+
+    // Approximate bytes held by the table arrays and the removed-key buffer.
+    public long estimateHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) table.capacity * (16 + 8L * columns + 2) + removed.length * 8L + 64;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean contains(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        boolean result = table.find(msb, lsb) >= 0;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = table.find(msb, lsb) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return result;
+    }
+
+    public double get(UUID uuid, int column) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        double result = table.get(msb, lsb, column);
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = table.get(msb, lsb, column);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return result;
+    }
+
+    public void put(UUID uuid, int column, double value) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(msb, lsb);
+
+            if (slot < 0) {
+                if (size + 1 > table.capacity * LOAD_FACTOR) {
+                    table = table.resize(table.capacity * 2);
+                }
+                slot = table.insert(msb, lsb);
+                size++;
+            }
+
+            table.values[slot * columns + column] = value;
+            table.dirty[slot] = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(msb, lsb);
+            if (slot < 0) return;
+
+            table.delete(slot);
+            size--;
+
+            if (removedCount * 2 == removed.length) {
+                removed = Arrays.copyOf(removed, Math.max(8, removed.length * 2));
+            }
+            removed[removedCount * 2] = msb;
+            removed[removedCount * 2 + 1] = lsb;
+            removedCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Empty store with the same columns, one generation ahead, so storages treat
+    // switching to it like a clear.
+    public ScoreStore emptyCopy() {
+        ScoreStore copy = new ScoreStore(columns);
+        copy.generation = generation + 1;
+        return copy;
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY, columns);
+            size = 0;
+            generation++;
+            removedCount = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Iterates a private copy of the table, so slow consumers (saves) never hold up writers.
+    public void forEach(int column, EntryConsumer consumer) {
+
+        Table copy = snapshot();
+
+        for (int slot = 0; slot < copy.capacity; slot++) {
+
+            if (!copy.used[slot]) continue;
+
+            double value = copy.values[slot * columns + column];
+            if (Double.isNaN(value)) continue;
+
+            consumer.accept(
+                    new UUID(copy.keys[slot * 2], copy.keys[slot * 2 + 1]),
+                    value
+            );
+        }
+    }
+
+    // Collects every row written or removed since the last drain and marks them clean.
+    // Removed rows are reported with all columns set to NaN.
+    public DirtyRows drainDirty() {
+
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int count = removedCount;
+
+            for (int slot = 0; slot < t.capacity; slot++) {
+                if (t.dirty[slot]) count++;
+            }
+
+            long[] keys = Arrays.copyOf(removed, count * 2);
+            double[] rows = Table.newValues(count * columns);
+            int row = removedCount;
+
+            for (int slot = 0; slot < t.capacity; slot++) {
+
+                if (!t.dirty[slot]) continue;
+
+                keys[row * 2] = t.keys[slot * 2];
+                keys[row * 2 + 1] = t.keys[slot * 2 + 1];
+                System.arraycopy(t.values, slot * columns, rows, row * columns, columns);
+
+                t.dirty[slot] = false;
+                row++;
+            }
+
+            removedCount = 0;
+            return new DirtyRows(generation, count, columns, keys, rows);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Marks every row clean and returns the current generation.
+    public long markClean() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(table.dirty, false);
+            removedCount = 0;
+            return generation;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Compact columnar copy of every row, used by the binary snapshot writer.
+    public Columns exportColumns() {
+
+        Table copy = snapshot();
+
+        int count = 0;
+        for (int slot = 0; slot < copy.capacity; slot++) {
+            if (copy.used[slot]) count++;
+        }
+
+        long[] msb = new long[count];
+        long[] lsb = new long[count];
+        double[][] values = new double[columns][count];
+
+        int row = 0;
+        for (int slot = 0; slot < copy.capacity; slot++) {
+
+            if (!copy.used[slot]) continue;
+
+            msb[row] = copy.keys[slot * 2];
+            lsb[row] = copy.keys[slot * 2 + 1];
+
+            for (int column = 0; column < columns; column++) {
+                values[column][row] = copy.values[slot * columns + column];
+            }
+
+            row++;
+        }
+
+        return new Columns(count, msb, lsb, values);
+    }
+
+    // Bulk load; the table is sized once up front instead of growing per insert.
+    public void importColumns(Columns data) {
+
+        if (data.getValues().length != columns) {
+            throw new IllegalArgumentException("Expected " + columns + " columns, got " + data.getValues().length);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int needed = (int) Math.ceil((size + data.size()) / LOAD_FACTOR) + 1;
+            int capacity = table.capacity;
+
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+
+            if (capacity != table.capacity) {
+                table = table.resize(capacity);
+            }
+
+            for (int row = 0; row < data.size(); row++) {
+
+                long msb = data.getMostSignificantBits()[row];
+                long lsb = data.getLeastSignificantBits()[row];
+
+                int slot = table.find(msb, lsb);
+                if (slot < 0) {
+                    slot = table.insert(msb, lsb);
+                    size++;
+                }
+
+                for (int column = 0; column < columns; column++) {
+                    table.values[slot * columns + column] = data.getValues()[column][row];
+                }
+
+                table.dirty[slot] = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private Table snapshot() {
+
+        long stamp = lock.tryOptimisticRead();
+        Table copy = table.copy();
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                copy = table.copy();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return copy;
+    }
+
+    public interface EntryConsumer {
+        void accept(UUID uuid, double value);
+    }
+
+    public static final class Columns {
+
+        private final int count;
+        private final long[] msb;
+        private final long[] lsb;
+        private final double[][] values;
+
+        public Columns(int count, long[] msb, long[] lsb, double[][] values) {
+            this.count = count;
+            this.msb = msb;
+            this.lsb = lsb;
+            this.values = values;
+        }
+
+        public int size() { return count; }
+        public long[] getMostSignificantBits() { return msb; }
+        public long[] getLeastSignificantBits() { return lsb; }
+        // indexed [column][row]
+        public double[][] getValues() { return values; }
+    }
+
+    public static final class DirtyRows {
+
+        private final long generation;
+        private final int count;
+        private final int columns;
+        private final long[] keys;
+        private final double[] values;
+
+        private DirtyRows(long generation, int count, int columns, long[] keys, double[] values) {
+            this.generation = generation;
+            this.count = count;
+            this.columns = columns;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        // bumped every time the store is cleared
+        public long getGeneration() { return generation; }
+        public int size() { return count; }
+        public long getMostSignificantBits(int row) { return keys[row * 2]; }
+        public long getLeastSignificantBits(int row) { return keys[row * 2 + 1]; }
+        public double getValue(int row, int column) { return values[row * columns + column]; }
+    }
+
+    private static final class Table {
+
+        private final int capacity;
+        private final int columns;
+        private final long[] keys;
+        private final double[] values;
+        private final boolean[] used;
+        private final boolean[] dirty;
+
+        private Table(int capacity, int columns) {
+            this(capacity, columns, new long[capacity * 2], newValues(capacity * columns),
+                    new boolean[capacity], new boolean[capacity]);
+        }
+
+        private Table(int capacity, int columns, long[] keys, double[] values, boolean[] used, boolean[] dirty) {
+            this.capacity = capacity;
+            this.columns = columns;
+            this.keys = keys;
+            this.values = values;
+            this.used = used;
+            this.dirty = dirty;
+        }
+
+        private static double[] newValues(int length) {
+            double[] values = new double[length];
+            Arrays.fill(values, Double.NaN);
+            return values;
+        }
+
+        private int find(long msb, long lsb) {
+
+            int mask = capacity - 1;
+            int slot = hash(msb, lsb) & mask;
+
+            // bounded so a read racing a write can never spin forever
+            for (int probes = 0; probes < capacity; probes++) {
+
+                if (!used[slot]) return -1;
+
+                if (keys[slot * 2] == msb && keys[slot * 2 + 1] == lsb) return slot;
+
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+
+        private double get(long msb, long lsb, int column) {
+            int slot = find(msb, lsb);
+            return slot >= 0 ? values[slot * columns + column] : Double.NaN;
+        }
+
+        private int insert(long msb, long lsb) {
+
+            int mask = capacity - 1;
+            int slot = hash(msb, lsb) & mask;
+
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot * 2] = msb;
+            keys[slot * 2 + 1] = lsb;
+            used[slot] = true;
+            return slot;
+        }
+
+        // backward-shift deletion keeps probe chains intact without tombstones
+        private void delete(int slot) {
+
+            int mask = capacity - 1;
+            int hole = slot;
+            int next = (slot + 1) & mask;
+
+            while (used[next]) {
+
+                int home = hash(keys[next * 2], keys[next * 2 + 1]) & mask;
+
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    move(next, hole);
+                    hole = next;
+                }
+
+                next = (next + 1) & mask;
+            }
+
+            used[hole] = false;
+            dirty[hole] = false;
+            Arrays.fill(values, hole * columns, hole * columns + columns, Double.NaN);
+        }
+
+        private void move(int from, int to) {
+            keys[to * 2] = keys[from * 2];
+            keys[to * 2 + 1] = keys[from * 2 + 1];
+            System.arraycopy(values, from * columns, values, to * columns, columns);
+            dirty[to] = dirty[from];
+        }
+
+        private Table resize(int newCapacity) {
+
+            Table resized = new Table(newCapacity, columns);
+
+            for (int slot = 0; slot < capacity; slot++) {
+
+                if (!used[slot]) continue;
+
+                int target = resized.insert(keys[slot * 2], keys[slot * 2 + 1]);
+                System.arraycopy(values, slot * columns, resized.values, target * columns, columns);
+                resized.dirty[target] = dirty[slot];
+            }
+
+            return resized;
+        }
+
+        private Table copy() {
+            return new Table(capacity, columns, keys.clone(), values.clone(), used.clone(), dirty);
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ Long.rotateLeft(lsb, 32);
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
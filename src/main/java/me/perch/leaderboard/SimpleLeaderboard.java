@@ -1,59 +1,98 @@
 package me.perch.leaderboard;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import me.perch.Leaderboards;
-import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class SimpleLeaderboard extends Leaderboard {
+public class SimpleLeaderboard extends Leaderboard implements PlaceholderSampler.SampleListener {
 
     private static final int CACHE_LIMIT = 30;
+    private static final int VALUE = 0;
 
     private final String placeholder;
     private final int updateInterval;
     private final int saveInterval;
-    private final long startDelay;
+    private final double sampleBudgetMs;
+    // vanilla statistic used by /perchlb backfill, or null
+    private final String backfillStatistic;
+    private final boolean synced;
 
-    private final Map<UUID, Double> values = new ConcurrentHashMap<>();
-    private volatile List<Map.Entry<UUID, Double>> cachedTop = new ArrayList<>();
+    private final ScoreStore scores = new ScoreStore(1);
+    private final RankIndex rankIndex = new RankIndex();
     private volatile boolean dirty = false;
-    private volatile boolean updating = false;
 
-    private final File dataFile;
+    // set by samples during a cycle (from region threads on Folia)
+    private volatile boolean changed = false;
 
-    private BukkitTask updateTask;
-    private BukkitTask saveTask;
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    // players changed since the last sync batch
+    private final Set<UUID> syncChanges = ConcurrentHashMap.newKeySet();
+    private boolean syncStarted = false;
+
+    private final File legacyFile;
+    private final File topFile;
+    private final LeaderboardStorage storage;
+
+    private PlaceholderSampler.Subscription subscription;
 
     public SimpleLeaderboard(String name,
                              String description,
                              String placeholder,
                              int updateInterval,
                              int saveInterval,
-                             long startDelay) {
+                             double sampleBudgetMs,
+                             String backfillStatistic,
+                             boolean synced,
+                             String storageType) {
 
         super(name, "simple", description);
 
         this.placeholder = placeholder;
         this.updateInterval = updateInterval;
         this.saveInterval = saveInterval;
-        this.startDelay = startDelay;
+        this.sampleBudgetMs = sampleBudgetMs;
+        this.backfillStatistic = backfillStatistic;
+        this.synced = synced;
 
-        this.dataFile = new File(
+        this.legacyFile = new File(
                 Leaderboards.getInstance().getDataFolder(),
                 "data/" + name + ".yml"
         );
 
-        load();
+        this.topFile = new File(
+                Leaderboards.getInstance().getDataFolder(),
+                "data/" + name + ".top"
+        );
+
+        this.storage = LeaderboardStorage.create(
+                storageType,
+                Leaderboards.getInstance().getDataFolder(),
+                name,
+                1
+        );
+
+        // serve the last persisted top list until load() and start() have run
+        try {
+            publishTop(LeaderboardSnapshot.readTop(topFile));
+        } catch (IOException e) {
+            Leaderboards.getInstance().getLogger().warning(
+                    "Could not read cached top for leaderboard '" + name + "': " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
         rebuildCache();
+        loaded = true;
         startTasks();
     }
 
@@ -61,132 +100,261 @@ public class SimpleLeaderboard extends Leaderboard {
     public String getPlaceholder() { return placeholder; }
 
     @Override
-    public String getTopName(int pos) {
-        if (pos <= 0 || pos > cachedTop.size()) return "";
-        return Bukkit.getOfflinePlayer(
-                cachedTop.get(pos - 1).getKey()
-        ).getName();
+    public int getEntryCount() { return scores.size(); }
+
+    @Override
+    public long estimateHeapBytes() {
+        return scores.estimateHeapBytes() + rankIndex.estimateHeapBytes();
+    }
+
+    @Override
+    public int getRank(UUID uuid) {
+        double value = scores.get(uuid, VALUE);
+        return !Double.isNaN(value) ? rankIndex.rankOf(uuid, value) : 0;
     }
 
     @Override
-    public String getTopValue(int pos) {
-        if (pos <= 0 || pos > cachedTop.size()) return "";
-        return String.valueOf(cachedTop.get(pos - 1).getValue());
+    public String getScore(UUID uuid) {
+        double value = scores.get(uuid, VALUE);
+        return !Double.isNaN(value) ? String.valueOf(value) : "";
+    }
+
+    @Override
+    public Map.Entry<UUID, Double> getTopEntry(int pos) {
+        if (pos <= 0) return null;
+
+        TopSnapshot top = getTopSnapshot();
+        if (pos <= top.size()) return top.getEntry(pos);
+
+        return rankIndex.get(pos);
+    }
+
+    @Override
+    protected List<Map.Entry<UUID, Double>> rankRange(int position, int count) {
+        return rankIndex.range(position, count);
     }
 
     private void startTasks() {
 
-        updateTask = Bukkit.getScheduler().runTaskTimer(
-                Leaderboards.getInstance(),
-                this::updateSync,
-                20L + startDelay,
-                updateInterval * 20L
-        );
+        subscription = Leaderboards.getInstance()
+                .getLeaderboardManager()
+                .getSampler()
+                .subscribe(placeholder, updateInterval, sampleBudgetMs, this);
 
-        saveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(
-                Leaderboards.getInstance(),
-                this::saveAsync,
-                saveInterval * 20L,
-                saveInterval * 20L
-        );
+        Leaderboards.getInstance().getLeaderboardManager().getPersistence().register(this);
+    }
+
+    @Override
+    public void onSample(Player player, double value) {
+        if (setValue(player.getUniqueId(), value)) changed = true;
+    }
+
+    @Override
+    public void onCycleComplete(PlaceholderSampler.Cycle cycle) {
+
+        metrics.recordSampleCycle(cycle);
+
+        if (!changed) return;
+        changed = false;
+
+        rebuildCache();
+        dirty = true;
+    }
+
+    @Override
+    protected boolean applySubmission(UUID uuid, double value, double delta) {
+
+        synchronized (lockFor(uuid)) {
+
+            if (Double.isNaN(value)) {
+                double old = scores.get(uuid, VALUE);
+                value = Double.isNaN(old) ? 0 : old;
+            }
+
+            return setValue(uuid, value + delta);
+        }
+    }
+
+    @Override
+    protected void submissionsApplied() {
+        rebuildCache();
+        dirty = true;
+    }
+
+    public String getBackfillStatistic() { return backfillStatistic; }
+
+    // Claims the board for a backfill; false if one is already running.
+    public boolean beginBackfill() {
+        return backfilling.compareAndSet(false, true);
     }
 
-    private void updateSync() {
+    // Main thread. Keeps the higher of the stored and the imported value, since
+    // vanilla statistics only grow; returns how many scores changed.
+    int mergeBackfill(long[] msb, long[] lsb, double[] values, int count) {
+
+        int updated = 0;
 
-        if (updating) return;
-        updating = true;
+        for (int i = 0; i < count; i++) {
 
-        List<Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
-        if (players.isEmpty()) {
-            updating = false;
-            return;
+            UUID uuid = new UUID(msb[i], lsb[i]);
+
+            synchronized (lockFor(uuid)) {
+                double old = scores.get(uuid, VALUE);
+
+                if (!Double.isNaN(old) && old >= values[i]) continue;
+                if (setValue(uuid, values[i])) updated++;
+            }
         }
 
-        final int batchSize = 10;
+        return updated;
+    }
 
-        new BukkitRunnable() {
+    void finishBackfill() {
+        backfilling.set(false);
+        rebuildCache();
+        dirty = true;
+    }
 
-            int index = 0;
-            boolean changed = false;
+    public boolean isSynced() { return synced; }
 
-            @Override
-            public void run() {
+    // Main thread. Scores changed since the last call, or every score when full
+    // (always the case for the first batch after start); null if nothing changed.
+    ScoreBatch collectSync(String node, boolean full) {
 
-                int processed = 0;
+        if (full || !syncStarted) {
 
-                while (index < players.size() && processed < batchSize) {
+            syncStarted = true;
+            syncChanges.clear();
 
-                    Player player = players.get(index++);
-                    processed++;
+            ScoreStore.Columns columns = scores.exportColumns();
 
-                    String result =
-                            PlaceholderAPI.setPlaceholders(player, placeholder);
+            return new ScoreBatch(node, name, true, columns.size(),
+                    columns.getMostSignificantBits(),
+                    columns.getLeastSignificantBits(),
+                    columns.getValues()[VALUE]);
+        }
 
-                    double value;
-                    try {
-                        value = Double.parseDouble(result.replace(",", ""));
-                    } catch (Exception e) {
-                        continue;
-                    }
+        if (syncChanges.isEmpty()) return null;
 
-                    UUID uuid = player.getUniqueId();
-                    Double old = values.get(uuid);
+        // taken out before reading, so a player changed meanwhile goes in the next batch
+        List<UUID> changedPlayers = new ArrayList<>(syncChanges);
+        changedPlayers.forEach(syncChanges::remove);
 
-                    if (old == null || Double.compare(old, value) != 0) {
-                        values.put(uuid, value);
-                        changed = true;
-                    }
-                }
+        int count = changedPlayers.size();
+        long[] msb = new long[count];
+        long[] lsb = new long[count];
+        double[] values = new double[count];
 
-                if (index >= players.size()) {
+        for (int row = 0; row < count; row++) {
+            UUID uuid = changedPlayers.get(row);
+            msb[row] = uuid.getMostSignificantBits();
+            lsb[row] = uuid.getLeastSignificantBits();
+            values[row] = scores.get(uuid, VALUE);
+        }
 
-                    if (changed) {
-                        rebuildCache();
-                        dirty = true;
-                    }
+        return new ScoreBatch(node, name, false, count, msb, lsb, values);
+    }
 
-                    updating = false;
-                    cancel();
-                }
+    // Only real changes are marked for sync; unchanged samples are the common case.
+    private boolean setValue(UUID uuid, double value) {
+
+        synchronized (lockFor(uuid)) {
+
+            double old = scores.get(uuid, VALUE);
+
+            if (Double.isNaN(old)) {
+                scores.put(uuid, VALUE, value);
+                rankIndex.insert(uuid, value);
+                if (synced) syncChanges.add(uuid);
+                return true;
             }
 
-        }.runTaskTimer(Leaderboards.getInstance(), 0L, 1L);
+            if (Double.compare(old, value) == 0) return false;
+
+            scores.put(uuid, VALUE, value);
+            rankIndex.update(uuid, old, value);
+            if (synced) syncChanges.add(uuid);
+            return true;
+        }
     }
 
     private void rebuildCache() {
-        cachedTop = values.entrySet().stream()
-                .sorted(Map.Entry.<UUID, Double>comparingByValue().reversed())
-                .limit(CACHE_LIMIT)
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        publishTop(rankIndex.range(1, CACHE_LIMIT));
+        metrics.recordRebuild(System.nanoTime() - start, rankIndex.size());
     }
 
-    private void load() {
-        if (!dataFile.exists()) return;
-
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
+    @Override
+    public void load() {
 
-        for (String key : config.getKeys(false)) {
-            values.put(UUID.fromString(key), config.getDouble(key));
+        try {
+            if (!storage.exists() && legacyFile.exists()) {
+                convertLegacy();
+            } else {
+                storage.load(scores);
+            }
+        } catch (IOException e) {
+            Leaderboards.getInstance().getLogger().warning(
+                    "Could not load data for leaderboard '" + name + "': " + e.getMessage());
         }
+
+        scores.forEach(VALUE, rankIndex::insert);
     }
 
-    private void saveAsync() {
+    @Override
+    boolean isDirty() { return dirty; }
+
+    @Override
+    int getSaveInterval() { return saveInterval; }
+
+    @Override
+    synchronized void save() {
         if (!dirty) return;
         dirty = false;
 
-        YamlConfiguration config = new YamlConfiguration();
-        values.forEach((u,v) -> config.set(u.toString(), v));
+        long start = System.nanoTime();
+        long written = storage.getBytesWritten();
+
+        try {
+            storage.flush(scores);
+            LeaderboardSnapshot.writeTop(topFile, getTopSnapshot().getEntries());
+            metrics.recordSave(System.nanoTime() - start, storage.getBytesWritten() - written, true);
+        } catch (IOException e) {
+            dirty = true;
+            metrics.recordSave(System.nanoTime() - start, storage.getBytesWritten() - written, false);
+            e.printStackTrace();
+        }
+    }
+
+    // One-time migration of the old YAML data file to the configured storage.
+    private void convertLegacy() throws IOException {
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
+
+        for (String key : config.getKeys(false)) {
+            scores.put(UUID.fromString(key), VALUE, config.getDouble(key));
+        }
 
-        try { config.save(dataFile); }
-        catch (IOException e) { e.printStackTrace(); }
+        storage.writeAll(scores);
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".migrated").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        Leaderboards.getInstance().getLogger().info(
+                "Converted leaderboard '" + name + "' from " + legacyFile.getName() + ".");
     }
 
     @Override
     public void shutdown() {
 
-        if (updateTask != null) updateTask.cancel();
-        if (saveTask != null) saveTask.cancel();
+        loaded = false;
+
+        if (subscription != null) subscription.cancel();
 
-        saveAsync();
+        Leaderboards.getInstance().getLeaderboardManager().getPersistence().unregister(this);
+    }
+
+    @Override
+    void close() {
+        storage.close();
     }
 }
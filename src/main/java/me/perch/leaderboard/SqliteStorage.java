@@ -0,0 +1,393 @@
+package me.perch.leaderboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+// Embedded SQLite backend (the driver ships with Paper). Every board gets its own
+// table in data/leaderboards.db, written in batched upserts off the main thread.
+// This is a persistence backend only, not a way to keep boards out of heap:
+// samples, sync and ranking all work on the board's ScoreStore and RankIndex,
+// so every row is loaded at start and there are no database-side rank queries.
+public class SqliteStorage implements LeaderboardStorage {
+
+    // one connection per database file, shared by every board stored in it
+    private static final Map<File, Database> DATABASES = new HashMap<>();
+
+    private final Database database;
+    private final String board;
+    private final String table;
+    private final int columns;
+
+    private boolean prepared = false;
+    private boolean closed = false;
+    private long generation;
+    private boolean rewritePending = false;
+
+    // row payload handed to SQLite; page and WAL overhead are not included
+    private volatile long bytesWritten;
+
+    public SqliteStorage(File databaseFile, String board, int columns) {
+
+        this.board = board;
+        // quoted, so every board name maps to its own table
+        this.table = "\"lb_" + board.replace("\"", "\"\"") + "\"";
+        this.columns = columns;
+
+        synchronized (DATABASES) {
+            this.database = DATABASES.computeIfAbsent(databaseFile.getAbsoluteFile(), Database::new);
+            this.database.users++;
+        }
+    }
+
+    // Caller holds the database lock.
+    private Connection connection() throws SQLException {
+
+        Connection connection = database.connection();
+        if (prepared) return connection;
+
+        try (Statement statement = connection.createStatement()) {
+
+            StringBuilder valueColumns = new StringBuilder();
+            for (int column = 0; column < columns; column++) {
+                valueColumns.append(", v").append(column).append(" REAL");
+            }
+
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table
+                    + " (msb INTEGER NOT NULL, lsb INTEGER NOT NULL" + valueColumns
+                    + ", PRIMARY KEY (msb, lsb))");
+        }
+
+        connection.commit();
+        prepared = true;
+        return connection;
+    }
+
+    @Override
+    public boolean exists() {
+        synchronized (database) {
+            try (PreparedStatement statement = connection().prepareStatement(
+                    "SELECT 1 FROM board_meta WHERE board = ? UNION ALL SELECT 1 FROM " + table + " LIMIT 1")) {
+
+                statement.setString(1, board);
+
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next();
+                }
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public long[] load(ScoreStore scores) throws IOException {
+        synchronized (database) {
+            try {
+                Connection connection = connection();
+
+                int count;
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    count = result.next() ? result.getInt(1) : 0;
+                }
+
+                long[] msb = new long[count];
+                long[] lsb = new long[count];
+                double[][] values = new double[columns][count];
+                int row = 0;
+
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT * FROM " + table)) {
+
+                    while (result.next() && row < count) {
+
+                        msb[row] = result.getLong("msb");
+                        lsb[row] = result.getLong("lsb");
+
+                        for (int column = 0; column < columns; column++) {
+                            double value = result.getDouble("v" + column);
+                            values[column][row] = result.wasNull() ? Double.NaN : value;
+                        }
+
+                        row++;
+                    }
+                }
+
+                scores.importColumns(new ScoreStore.Columns(row, msb, lsb, values));
+                generation = scores.markClean();
+
+                long[] meta = readMeta(connection);
+                connection.commit();
+                return meta;
+
+            } catch (SQLException e) {
+                throw new IOException("Could not load leaderboard '" + board + "' from SQLite", e);
+            }
+        }
+    }
+
+    private long[] readMeta(Connection connection) throws SQLException {
+
+        List<Long> meta = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT value FROM board_meta WHERE board = ? ORDER BY idx")) {
+
+            statement.setString(1, board);
+
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    meta.add(result.getLong(1));
+                }
+            }
+        }
+
+        return meta.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Upserts the dirty rows in one batched transaction.
+    @Override
+    public void flush(ScoreStore scores, long... meta) throws IOException {
+        synchronized (database) {
+            if (rewritePending) {
+                writeAll(scores, meta);
+                return;
+            }
+
+            ScoreStore.DirtyRows rows = scores.drainDirty();
+
+            try {
+                Connection connection = connection();
+
+                try {
+                    if (rows.getGeneration() != generation) {
+                        try (Statement statement = connection.createStatement()) {
+                            statement.executeUpdate("DELETE FROM " + table);
+                        }
+                    }
+
+                    writeRows(connection, rows);
+                    writeMeta(connection, meta);
+                    connection.commit();
+
+                    bytesWritten += rowBytes(rows.size()) + meta.length * 8L;
+
+                    generation = rows.getGeneration();
+
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                // the drained rows were not stored; fall back to a full rewrite next time
+                rewritePending = true;
+                throw new IOException("Could not save leaderboard '" + board + "' to SQLite", e);
+            }
+        }
+    }
+
+    @Override
+    public void writeAll(ScoreStore scores, long... meta) throws IOException {
+        synchronized (database) {
+            long current = scores.markClean();
+            ScoreStore.Columns data = scores.exportColumns();
+
+            try {
+                Connection connection = connection();
+
+                try {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("DELETE FROM " + table);
+                    }
+
+                    try (PreparedStatement insert = connection.prepareStatement(upsertSql())) {
+
+                        for (int row = 0; row < data.size(); row++) {
+
+                            insert.setLong(1, data.getMostSignificantBits()[row]);
+                            insert.setLong(2, data.getLeastSignificantBits()[row]);
+
+                            for (int column = 0; column < columns; column++) {
+                                setValue(insert, 3 + column, data.getValues()[column][row]);
+                            }
+
+                            insert.addBatch();
+                        }
+
+                        insert.executeBatch();
+                    }
+
+                    writeMeta(connection, meta);
+                    connection.commit();
+
+                    bytesWritten += rowBytes(data.size()) + meta.length * 8L;
+                    generation = current;
+                    rewritePending = false;
+
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                rewritePending = true;
+                throw new IOException("Could not write leaderboard '" + board + "' to SQLite", e);
+            }
+        }
+    }
+
+    private void writeRows(Connection connection, ScoreStore.DirtyRows rows) throws SQLException {
+
+        try (PreparedStatement upsert = connection.prepareStatement(upsertSql());
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE msb = ? AND lsb = ?")) {
+
+            boolean anyUpsert = false;
+            boolean anyDelete = false;
+
+            for (int row = 0; row < rows.size(); row++) {
+
+                boolean removed = true;
+                for (int column = 0; column < columns; column++) {
+                    if (!Double.isNaN(rows.getValue(row, column))) removed = false;
+                }
+
+                if (removed) {
+                    delete.setLong(1, rows.getMostSignificantBits(row));
+                    delete.setLong(2, rows.getLeastSignificantBits(row));
+                    delete.addBatch();
+                    anyDelete = true;
+                    continue;
+                }
+
+                upsert.setLong(1, rows.getMostSignificantBits(row));
+                upsert.setLong(2, rows.getLeastSignificantBits(row));
+
+                for (int column = 0; column < columns; column++) {
+                    setValue(upsert, 3 + column, rows.getValue(row, column));
+                }
+
+                upsert.addBatch();
+                anyUpsert = true;
+            }
+
+            if (anyDelete) delete.executeBatch();
+            if (anyUpsert) upsert.executeBatch();
+        }
+    }
+
+    private void writeMeta(Connection connection, long[] meta) throws SQLException {
+
+        if (meta.length == 0) return;
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT OR REPLACE INTO board_meta (board, idx, value) VALUES (?, ?, ?)")) {
+
+            for (int i = 0; i < meta.length; i++) {
+                statement.setString(1, board);
+                statement.setInt(2, i);
+                statement.setLong(3, meta[i]);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private long rowBytes(int rows) {
+        return rows * (16L + columns * 8L);
+    }
+
+    @Override
+    public long getBytesWritten() { return bytesWritten; }
+
+    private String upsertSql() {
+
+        StringBuilder names = new StringBuilder("msb, lsb");
+        StringBuilder params = new StringBuilder("?, ?");
+        StringBuilder updates = new StringBuilder();
+
+        for (int column = 0; column < columns; column++) {
+            names.append(", v").append(column);
+            params.append(", ?");
+            if (column > 0) updates.append(", ");
+            updates.append("v").append(column).append(" = excluded.v").append(column);
+        }
+
+        return "INSERT INTO " + table + " (" + names + ") VALUES (" + params + ")"
+                + " ON CONFLICT (msb, lsb) DO UPDATE SET " + updates;
+    }
+
+    // SQLite has no NaN; missing columns are stored as NULL
+    private static void setValue(PreparedStatement statement, int index, double value) throws SQLException {
+        if (Double.isNaN(value)) {
+            statement.setNull(index, Types.REAL);
+        } else {
+            statement.setDouble(index, value);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        synchronized (database) {
+            if (closed) return;
+            closed = true;
+        }
+
+        synchronized (DATABASES) {
+            if (--database.users > 0) return;
+            DATABASES.remove(database.file);
+        }
+
+        synchronized (database) {
+            database.close();
+        }
+    }
+
+    // SQLite allows a single writer per file anyway, so every board in the file
+    // shares one connection and takes turns on it (each call is one transaction).
+    private static final class Database {
+
+        private final File file;
+        private Connection connection;
+        private int users;
+
+        private Database(File file) {
+            this.file = file;
+        }
+
+        private Connection connection() throws SQLException {
+
+            if (connection != null && !connection.isClosed()) return connection;
+
+            file.getParentFile().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+
+            try (Statement statement = connection.createStatement()) {
+
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                // another server process may still have the file open
+                statement.execute("PRAGMA busy_timeout=5000");
+
+                statement.execute("CREATE TABLE IF NOT EXISTS board_meta"
+                        + " (board TEXT NOT NULL, idx INTEGER NOT NULL, value INTEGER NOT NULL,"
+                        + " PRIMARY KEY (board, idx))");
+            }
+
+            connection.setAutoCommit(false);
+            return connection;
+        }
+
+        private void close() {
+            try {
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            connection = null;
+        }
+    }
+}
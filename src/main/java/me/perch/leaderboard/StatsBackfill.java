@@ -0,0 +1,275 @@
+package me.perch.leaderboard;
+
+import com.google.gson.stream.JsonReader;
+import me.perch.Leaderboards;
+import me.perch.scheduler.TaskScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Imports one vanilla statistic from world/stats/<uuid>.json into a board.
+// Files are streamed and parsed by a small worker pool; parsed values are
+// handed to the main thread in fixed-size chunks through a bounded queue, so
+// memory stays flat no matter how many files there are. The board's top list
+// is rebuilt once when the import finishes.
+public class StatsBackfill {
+
+    private static final int CHUNK_SIZE = 2048;
+    private static final int MAX_PENDING_CHUNKS = 8;
+
+    // main-thread time spent merging per tick
+    private static final long MERGE_BUDGET_NANOS = 2_000_000L;
+
+    private static final Chunk END = new Chunk();
+
+    private final Leaderboards plugin;
+    private final SimpleLeaderboard board;
+    private final File statsFolder;
+    private final String category;
+    private final String key;
+
+    private final BlockingQueue<Chunk> ready = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile boolean cancelled = false;
+
+    private Chunk current = new Chunk();
+    private int merged;
+    private long started;
+    private TaskScheduler.Task mergeTask;
+
+    public StatsBackfill(Leaderboards plugin, SimpleLeaderboard board, File statsFolder, String statistic) {
+        this.plugin = plugin;
+        this.board = board;
+        this.statsFolder = statsFolder;
+
+        // "minecraft:custom/minecraft:play_time", the namespace may be left out
+        String[] parts = statistic.split("/", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Statistic must look like <category>/<key>: " + statistic);
+        }
+
+        this.category = namespaced(parts[0]);
+        this.key = namespaced(parts[1]);
+    }
+
+    private static String namespaced(String id) {
+        id = id.trim().toLowerCase();
+        return id.contains(":") ? id : "minecraft:" + id;
+    }
+
+    // Runs the import; the callback is invoked on the main thread when it is done.
+    public void start(Consumer<Result> callback) {
+
+        started = System.currentTimeMillis();
+
+        Thread reader = new Thread(this::readAll, "PerchLeaderboards Backfill");
+        reader.setDaemon(true);
+        reader.start();
+
+        mergeTask = plugin.getTaskScheduler().runTimer(() -> {
+
+            // the board was shut down or reloaded underneath us
+            if (!board.isLoaded()) {
+                cancelled = true;
+                mergeTask.cancel();
+                ready.clear();
+                return;
+            }
+
+            if (merge()) {
+                mergeTask.cancel();
+                board.finishBackfill();
+                callback.accept(new Result(files.get(), merged, failures.get(),
+                        System.currentTimeMillis() - started));
+            }
+        }, 1L, 1L);
+    }
+
+    private void readAll() {
+
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "PerchLeaderboards Backfill Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // bounds the number of files queued ahead of the workers
+        Semaphore permits = new Semaphore(threads * 4);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(statsFolder.toPath(), "*.json")) {
+
+            for (Path path : stream) {
+                if (cancelled) break;
+                permits.acquire();
+                workers.execute(() -> {
+                    try {
+                        readFile(path);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not list " + statsFolder + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        workers.shutdown();
+
+        try {
+            workers.awaitTermination(1, TimeUnit.HOURS);
+
+            Chunk last;
+            synchronized (this) {
+                last = current;
+                current = null;
+            }
+
+            if (last.size > 0) handOff(last);
+            handOff(END);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readFile(Path path) {
+
+        if (cancelled) return;
+        files.incrementAndGet();
+
+        String name = path.getFileName().toString();
+
+        try {
+            UUID uuid = UUID.fromString(name.substring(0, name.length() - ".json".length()));
+            double value = readStatistic(path);
+
+            if (!Double.isNaN(value)) add(uuid, value);
+
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Streams {"stats": {<category>: {<key>: value}}} without building a tree.
+    private double readStatistic(Path path) throws IOException {
+
+        double value = Double.NaN;
+
+        try (Reader input = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(input)) {
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+
+                if (!reader.nextName().equals("stats")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+
+                while (reader.hasNext()) {
+
+                    if (!reader.nextName().equals(category)) {
+                        reader.skipValue();
+                        continue;
+                    }
+
+                    reader.beginObject();
+
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals(key)) {
+                            value = reader.nextDouble();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+
+                    reader.endObject();
+                }
+
+                reader.endObject();
+            }
+
+            reader.endObject();
+        }
+
+        return value;
+    }
+
+    private void add(UUID uuid, double value) throws InterruptedException {
+
+        Chunk full = null;
+
+        synchronized (this) {
+            current.add(uuid, value);
+            if (current.size == CHUNK_SIZE) {
+                full = current;
+                current = new Chunk();
+            }
+        }
+
+        if (full != null) handOff(full);
+    }
+
+    // Blocks while the main thread is behind, which is what bounds memory.
+    private void handOff(Chunk chunk) throws InterruptedException {
+        while (!cancelled) {
+            if (ready.offer(chunk, 1, TimeUnit.SECONDS)) return;
+        }
+    }
+
+    // Merges queued chunks within the tick budget; true once everything is merged.
+    private boolean merge() {
+
+        long deadline = System.nanoTime() + MERGE_BUDGET_NANOS;
+
+        while (System.nanoTime() < deadline) {
+
+            Chunk chunk = ready.poll();
+            if (chunk == null) return false;
+            if (chunk == END) return true;
+
+            merged += board.mergeBackfill(chunk.msb, chunk.lsb, chunk.values, chunk.size);
+        }
+
+        return false;
+    }
+
+    private static final class Chunk {
+
+        private final long[] msb = new long[CHUNK_SIZE];
+        private final long[] lsb = new long[CHUNK_SIZE];
+        private final double[] values = new double[CHUNK_SIZE];
+        private int size;
+
+        private void add(UUID uuid, double value) {
+            msb[size] = uuid.getMostSignificantBits();
+            lsb[size] = uuid.getLeastSignificantBits();
+            values[size] = value;
+            size++;
+        }
+    }
+
+    // merged counts the players whose score changed
+    public record Result(int files, int merged, int failures, long millis) {}
+}
@@ -0,0 +1,21 @@
+package me.perch.leaderboard;
+
+import java.io.IOException;
+import java.util.List;
+
+// Carries score batches between the servers of a network. Implementations are
+// only ever called from the sync thread.
+public interface SyncTransport {
+
+    // Sends this node's batches to every other node.
+    void publish(List<ScoreBatch> batches) throws IOException;
+
+    // Replaces everything this node published so far with a full snapshot, so
+    // the transport does not grow without bound.
+    void replace(List<ScoreBatch> snapshot) throws IOException;
+
+    // Batches published by other nodes since the last poll, oldest first.
+    List<ScoreBatch> poll() throws IOException;
+
+    void close();
+}
@@ -7,47 +7,59 @@ import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
 import me.clip.placeholderapi.PlaceholderAPI;
 import me.perch.Leaderboards;
-import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class TimedLeaderboard extends Leaderboard {
+public class TimedLeaderboard extends Leaderboard implements PlaceholderSampler.SampleListener {
 
     private static final int CACHE_LIMIT = 30;
+    private static final int BASELINE = 0;
+    private static final int EARNED = 1;
 
     private final List<TimedTask> tasks;
     private final Map<Integer, List<String>> rewards;
 
-    private int currentTaskIndex = 0;
-
     private final int updateInterval;
     private final int saveInterval;
-    private final long startDelay;
+    private final double sampleBudgetMs;
 
-    private final Map<UUID, Double> baseline = new ConcurrentHashMap<>();
-    private final Map<UUID, Double> values = new ConcurrentHashMap<>();
+    // the running period with its start and task; rollover swaps in a fresh one
+    private volatile PeriodScores period = new PeriodScores(new ScoreStore(2), System.currentTimeMillis(), 0);
+    // scores of the closed period (no longer written to, its ranking dropped),
+    // kept while the new one uses the same placeholder so baselines can carry over
+    private volatile ScoreStore previous;
 
-    private volatile List<Map.Entry<UUID, Double>> cachedTop = new ArrayList<>();
     private volatile boolean dirty = false;
-    private volatile boolean updating = false;
-    private volatile boolean resetting = false;
 
-    private final File dataFile;
-    private long lastReset;
+    // set by samples during a cycle (from region threads on Folia)
+    private volatile boolean changed = false;
+
+    private final File legacyFile;
+    private final File topFile;
+    private final LeaderboardStorage storage;
+    private final PeriodArchive archive;
+    // next fire time of the cron, worked out once per period; Long.MAX_VALUE if never
+    private volatile long nextReset = Long.MAX_VALUE;
+
+    // closed periods waiting to be appended to the archive by the next save
+    private final Deque<ClosedPeriod> archiveQueue = new ConcurrentLinkedDeque<>();
+    // top list of the most recently closed period
+    private final AtomicReference<TopSnapshot> lastTop = new AtomicReference<>(TopSnapshot.EMPTY);
 
     private final ExecutionTime executionTime;
 
-    private BukkitTask updateTask;
-    private BukkitTask saveTask;
+    private PlaceholderSampler.Subscription subscription;
 
     public TimedLeaderboard(String name,
                             List<TimedTask> tasks,
@@ -55,7 +67,8 @@ public class TimedLeaderboard extends Leaderboard {
                             String cronExpression,
                             int updateInterval,
                             int saveInterval,
-                            long startDelay) {
+                            double sampleBudgetMs,
+                            String storageType) {
 
         super(name, "timed", "");
 
@@ -66,31 +79,67 @@ public class TimedLeaderboard extends Leaderboard {
         this.rewards = rewards != null ? rewards : new HashMap<>();
         this.updateInterval = updateInterval;
         this.saveInterval = saveInterval;
-        this.startDelay = startDelay;
+        this.sampleBudgetMs = sampleBudgetMs;
 
-        this.dataFile = new File(
+        this.legacyFile = new File(
                 Leaderboards.getInstance().getDataFolder(),
                 "data/" + name + ".yml"
         );
 
+        this.topFile = new File(
+                Leaderboards.getInstance().getDataFolder(),
+                "data/" + name + ".top"
+        );
+
+        this.storage = LeaderboardStorage.create(
+                storageType,
+                Leaderboards.getInstance().getDataFolder(),
+                name,
+                2
+        );
+
+        this.archive = new PeriodArchive(Leaderboards.getInstance().getDataFolder(), name);
+
         CronParser parser = new CronParser(
                 CronDefinitionBuilder.instanceDefinitionFor(CronType.QUARTZ)
         );
         Cron cron = parser.parse(cronExpression);
         executionTime = ExecutionTime.forCron(cron);
 
-        load();
+        // serve the last persisted top list until load() and start() have run
+        try {
+            publishTop(LeaderboardSnapshot.readTop(topFile));
+        } catch (IOException e) {
+            Leaderboards.getInstance().getLogger().warning(
+                    "Could not read cached top for leaderboard '" + name + "': " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
         rebuildCache();
+        loaded = true;
         startTasks();
     }
 
     @Override
     public String getPlaceholder() {
-        return tasks.get(currentTaskIndex).getPlaceholder();
+        return tasks.get(period.taskIndex).getPlaceholder();
+    }
+
+    @Override
+    public int getEntryCount() { return period.scores.size(); }
+
+    @Override
+    public long estimateHeapBytes() {
+        PeriodScores current = period;
+        ScoreStore last = previous;
+        return current.scores.estimateHeapBytes() + current.rankIndex.estimateHeapBytes()
+                + (last != null ? last.estimateHeapBytes() : 0);
     }
 
     public String getCurrentTaskDescription() {
-        return tasks.get(currentTaskIndex).getDescription();
+        return tasks.get(period.taskIndex).getDescription();
     }
 
     public List<TimedTask> getTasks() {
@@ -98,252 +147,382 @@ public class TimedLeaderboard extends Leaderboard {
     }
 
     public int getCurrentTaskIndex() {
-        return currentTaskIndex;
+        return period.taskIndex;
+    }
+
+    public PeriodArchive getArchive() { return archive; }
+
+    public TopSnapshot getLastPeriodTop() {
+
+        TopSnapshot current = lastTop.get();
+        NameCache names = Leaderboards.getInstance().getLeaderboardManager().getNameCache();
+
+        if (current.isMissingNames(names)) {
+            TopSnapshot refreshed = current.refreshNames(names);
+            return lastTop.compareAndSet(current, refreshed) ? refreshed : lastTop.get();
+        }
+
+        return current;
     }
 
     public long getTimeUntilResetMillis() {
+        long next = nextReset;
+        return next != Long.MAX_VALUE ? next - System.currentTimeMillis() : -1;
+    }
 
-        ZonedDateTime now = ZonedDateTime.now();
+    public long getNextReset() { return nextReset; }
 
-        Optional<ZonedDateTime> next =
-                executionTime.nextExecution(
-                        ZonedDateTime.ofInstant(
-                                new Date(lastReset).toInstant(),
-                                now.getZone()
-                        )
-                );
+    private long computeNextReset(long from) {
 
-        if (next.isEmpty()) return -1;
+        Optional<ZonedDateTime> next = executionTime.nextExecution(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(from), ZoneId.systemDefault()));
 
-        return next.get().toInstant().toEpochMilli()
-                - System.currentTimeMillis();
+        return next.map(time -> time.toInstant().toEpochMilli()).orElse(Long.MAX_VALUE);
     }
 
     @Override
-    public String getTopName(int position) {
-        if (position <= 0 || position > cachedTop.size()) return "";
-        UUID uuid = cachedTop.get(position - 1).getKey();
-        return Optional.ofNullable(
-                Bukkit.getOfflinePlayer(uuid).getName()
-        ).orElse("");
+    public int getRank(UUID uuid) {
+        PeriodScores current = period;
+        double value = current.scores.get(uuid, EARNED);
+        return !Double.isNaN(value) ? current.rankIndex.rankOf(uuid, value) : 0;
     }
 
     @Override
-    public String getTopValue(int position) {
-        if (position <= 0 || position > cachedTop.size()) return "";
-        return String.valueOf(
-                cachedTop.get(position - 1).getValue()
-        );
+    public String getScore(UUID uuid) {
+        double value = period.scores.get(uuid, EARNED);
+        return !Double.isNaN(value) ? String.valueOf(value) : "";
+    }
+
+    @Override
+    public Map.Entry<UUID, Double> getTopEntry(int position) {
+        if (position <= 0) return null;
+
+        TopSnapshot top = getTopSnapshot();
+        if (position <= top.size()) return top.getEntry(position);
+
+        return period.rankIndex.get(position);
+    }
+
+    @Override
+    protected List<Map.Entry<UUID, Double>> rankRange(int position, int count) {
+        return period.rankIndex.range(position, count);
     }
 
     private void startTasks() {
 
-        updateTask = Bukkit.getScheduler().runTaskTimer(
-                Leaderboards.getInstance(),
-                this::updateSync,
-                20L + startDelay,
-                updateInterval * 20L
-        );
+        subscribe();
 
-        saveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(
-                Leaderboards.getInstance(),
-                this::saveIfDirtyAsync,
-                saveInterval * 20L,
-                saveInterval * 20L
-        );
+        Leaderboards.getInstance().getLeaderboardManager().getPersistence().register(this);
     }
 
+    // (re)subscribes to the placeholder of the current task
+    private void subscribe() {
 
-    private void updateSync() {
+        if (subscription != null) subscription.cancel();
 
-        if (updating || resetting) return;
-        updating = true;
+        subscription = Leaderboards.getInstance()
+                .getLeaderboardManager()
+                .getSampler()
+                .subscribe(getPlaceholder(), updateInterval, sampleBudgetMs, this);
+    }
 
-        List<Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
-        if (players.isEmpty()) {
-            updating = false;
-            return;
-        }
+    @Override
+    public void onSample(Player player, double current) {
+        if (setCurrent(player.getUniqueId(), current)) changed = true;
+    }
 
-        final int batchSize = 10;
+    @Override
+    public void onCycleComplete(PlaceholderSampler.Cycle cycle) {
 
-        new BukkitRunnable() {
+        metrics.recordSampleCycle(cycle);
+        if (cycle.sampled() == 0) return;
 
-            int index = 0;
-            boolean changed = false;
-            String activePlaceholder = getPlaceholder();
+        if (changed) {
+            changed = false;
+            rebuildCache();
+            dirty = true;
+        }
+    }
 
-            @Override
-            public void run() {
+    // A submitted value is the player's current statistic, like a sample; an
+    // increment adds to the earned value and moves the baseline down with it so
+    // the next sample keeps the increment.
+    @Override
+    protected boolean applySubmission(UUID uuid, double value, double delta) {
 
-                int processed = 0;
+        synchronized (lockFor(uuid)) {
 
-                while (index < players.size() && processed < batchSize) {
+            // one read, so a rollover in between cannot split the update
+            PeriodScores current = period;
+            boolean updated = false;
 
-                    Player player = players.get(index++);
-                    processed++;
+            if (!Double.isNaN(value)) {
+                updated = setCurrent(current, uuid, value);
+            }
 
-                    String result =
-                            PlaceholderAPI.setPlaceholders(player, activePlaceholder);
+            if (delta == 0) return updated;
 
-                    double current;
-                    try {
-                        current = Double.parseDouble(result.replace(",", ""));
-                    } catch (Exception e) {
-                        continue;
-                    }
+            ScoreStore scores = current.scores;
 
-                    UUID uuid = player.getUniqueId();
+            double base = scores.get(uuid, BASELINE);
+            if (!Double.isNaN(base)) {
+                scores.put(uuid, BASELINE, base - delta);
+            }
 
-                    baseline.putIfAbsent(uuid, current);
-                    double earned = current - baseline.get(uuid);
+            double old = scores.get(uuid, EARNED);
+            return setEarned(current, uuid, (Double.isNaN(old) ? 0 : old) + delta) || updated;
+        }
+    }
 
-                    Double old = values.get(uuid);
+    @Override
+    protected void submissionsApplied() {
+        rebuildCache();
+        dirty = true;
+    }
 
-                    if (old == null || Double.compare(old, earned) != 0) {
-                        values.put(uuid, earned);
-                        changed = true;
-                    }
-                }
+    // Captures the baseline of a joining player who has none this period, so
+    // everything earned from here on counts even before their first sample.
+    public void captureBaseline(Player player) {
 
-                if (index >= players.size()) {
+        if (!loaded) return;
+        if (!Double.isNaN(period.scores.get(player.getUniqueId(), BASELINE))) return;
 
-                    if (changed) {
-                        rebuildCache();
-                        dirty = true;
-                    }
+        double current = PlaceholderSampler.parse(PlaceholderAPI.setPlaceholders(player, getPlaceholder()));
+        if (Double.isNaN(current)) return;
 
-                    updating = false;
-                    checkReset();
-                    cancel();
-                }
-            }
+        if (setCurrent(player.getUniqueId(), current)) changed = true;
+    }
 
-        }.runTaskTimer(Leaderboards.getInstance(), 0L, 1L);
+    // Baselines are captured lazily: on a player's first sample or join of the
+    // period, from their last value in the previous period when it tracked the
+    // same placeholder, otherwise from the value seen now.
+    private boolean setCurrent(UUID uuid, double current) {
+        return setCurrent(period, uuid, current);
     }
 
-    private void checkReset() {
+    private boolean setCurrent(PeriodScores into, UUID uuid, double current) {
 
-        if (getTimeUntilResetMillis() > 0) return;
-        if (resetting) return;
+        synchronized (lockFor(uuid)) {
 
-        resetting = true;
+            ScoreStore scores = into.scores;
 
-        // DISTRIBUTE REWARDS BEFORE CLEARING
-        distributeRewards();
+            double base = scores.get(uuid, BASELINE);
+            if (Double.isNaN(base)) {
 
-        // Rotate task
-        currentTaskIndex++;
-        if (currentTaskIndex >= tasks.size()) {
-            currentTaskIndex = 0;
+                // keep anything already earned through increments this period
+                double earned = scores.get(uuid, EARNED);
+                if (Double.isNaN(earned)) earned = 0;
+
+                ScoreStore closed = previous;
+                double last = closed != null ? lastValue(closed, uuid) : Double.NaN;
+                base = (!Double.isNaN(last) && last <= current ? last : current) - earned;
+
+                scores.put(uuid, BASELINE, base);
+            }
+
+            return setEarned(into, uuid, current - base);
         }
+    }
 
-        lastReset = System.currentTimeMillis();
+    private boolean setEarned(PeriodScores current, UUID uuid, double earned) {
 
-        baseline.clear();
-        values.clear();
-        cachedTop = new ArrayList<>();
+        double old = current.scores.get(uuid, EARNED);
 
-        List<Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
-        if (players.isEmpty()) {
-            dirty = true;
-            resetting = false;
-            return;
+        if (Double.isNaN(old)) {
+            current.scores.put(uuid, EARNED, earned);
+            current.rankIndex.insert(uuid, earned);
+            return true;
         }
 
-        final int batchSize = 10;
-        final String placeholder = getPlaceholder();
+        if (Double.compare(old, earned) == 0) return false;
 
-        new BukkitRunnable() {
+        current.scores.put(uuid, EARNED, earned);
+        current.rankIndex.update(uuid, old, earned);
+        return true;
+    }
 
-            int index = 0;
+    // Closes the period; called by the ResetScheduler on the main thread once
+    // the precomputed reset time has passed.
+    void rollover(long now) {
 
-            @Override
-            public void run() {
+        PeriodScores closed = period;
 
-                int processed = 0;
+        // DISTRIBUTE REWARDS BEFORE CLEARING
+        distributeRewards(closed.start);
 
-                while (index < players.size() && processed < batchSize) {
+        // the closed period is no longer written to, so the save queued below
+        // can archive it off the main thread
+        archiveQueue.add(new ClosedPeriod(closed.start, now, closed.taskIndex, closed.rankIndex));
+        lastTop.set(getTopSnapshot());
 
-                    Player player = players.get(index++);
-                    processed++;
+        // Rotate task
+        int taskIndex = closed.taskIndex + 1;
+        if (taskIndex >= tasks.size()) {
+            taskIndex = 0;
+        }
 
-                    String result =
-                            PlaceholderAPI.setPlaceholders(player, placeholder);
+        nextReset = computeNextReset(now);
 
-                    try {
-                        double value = Double.parseDouble(result.replace(",", ""));
-                        baseline.put(player.getUniqueId(), value);
-                    } catch (Exception ignored) {}
-                }
+        // O(1) rollover: a fresh period, start and task replace the old ones in a single write,
+        // baselines fill in as players are sampled or join
+        period = new PeriodScores(closed.scores.emptyCopy(), now, taskIndex);
+        previous = tasks.get(taskIndex).getPlaceholder().equals(tasks.get(closed.taskIndex).getPlaceholder())
+                ? closed.scores : null;
+        changed = false;
 
-                if (index >= players.size()) {
+        publishTop(List.of());
+        subscribe();
 
-                    dirty = true;
-                    resetting = false;
-                    cancel();
-                }
-            }
+        dirty = true;
+        Leaderboards.getInstance().getLeaderboardManager().getPersistence().saveSoon(this);
+    }
 
-        }.runTaskTimer(Leaderboards.getInstance(), 0L, 1L);
+    // the player's last seen statistic (baseline + earned) in a closed period, or NaN
+    private static double lastValue(ScoreStore scores, UUID uuid) {
+        double base = scores.get(uuid, BASELINE);
+        return !Double.isNaN(base) ? base + scores.get(uuid, EARNED) : Double.NaN;
     }
 
-    private void distributeRewards() {
+    // Hands the period's winners to the reward queue, which runs the commands
+    // under its own tick budget and survives a restart. The queue skips a period
+    // it has already seen: until the save queued by rollover has stored the new
+    // start, a crash brings the old period back and its reset fires again.
+    private void distributeRewards(long start) {
+
+        TopSnapshot top = getTopSnapshot();
 
         if (rewards.isEmpty()) return;
-        if (cachedTop.isEmpty()) return;
+        if (top.size() == 0) return;
+
+        List<RewardQueue.Winner> winners = new ArrayList<>();
 
         for (Map.Entry<Integer, List<String>> entry : rewards.entrySet()) {
 
             int position = entry.getKey();
-            if (position <= 0 || position > cachedTop.size()) continue;
+            if (position <= 0 || position > top.size()) continue;
 
-            UUID uuid = cachedTop.get(position - 1).getKey();
-            String playerName = Bukkit.getOfflinePlayer(uuid).getName();
-            double score = cachedTop.get(position - 1).getValue();
+            winners.add(new RewardQueue.Winner(top.getUuid(position), position, top.getValue(position), entry.getValue()));
+        }
 
-            if (playerName == null) continue;
+        if (!Leaderboards.getInstance().getLeaderboardManager().getRewardQueue().enqueue(name, start, winners)) {
+            Leaderboards.getInstance().getLogger().info(
+                    "Rewards of leaderboard '" + name + "' for this period were already queued, skipping.");
+        }
+    }
 
-            for (String command : entry.getValue()) {
+    private void rebuildCache() {
 
-                String parsed = command
-                        .replace("{player}", playerName)
-                        .replace("{position}", String.valueOf(position))
-                        .replace("{score}", String.valueOf(score));
+        long start = System.nanoTime();
+        RankIndex rankIndex = period.rankIndex;
+        publishTop(rankIndex.range(1, CACHE_LIMIT));
+        metrics.recordRebuild(System.nanoTime() - start, rankIndex.size());
+    }
 
-                Bukkit.dispatchCommand(
-                        Bukkit.getConsoleSender(),
-                        parsed
-                );
+    @Override
+    public void load() {
+
+        ScoreStore scores = new ScoreStore(2);
+        long lastReset = System.currentTimeMillis();
+        int taskIndex = 0;
+
+        try {
+            long[] meta = !storage.exists() && legacyFile.exists()
+                    ? convertLegacy(scores)
+                    : storage.load(scores);
+
+            if (meta.length >= 2) {
+                lastReset = meta[0];
+                taskIndex = (int) meta[1];
             }
+        } catch (IOException e) {
+            Leaderboards.getInstance().getLogger().warning(
+                    "Could not load data for leaderboard '" + name + "': " + e.getMessage());
         }
-    }
 
-    private void rebuildCache() {
+        if (taskIndex < 0 || taskIndex >= tasks.size()) {
+            taskIndex = 0;
+        }
+
+        PeriodScores restored = new PeriodScores(scores, lastReset, taskIndex);
+        scores.forEach(EARNED, restored.rankIndex::insert);
+        period = restored;
 
-        cachedTop = values.entrySet()
-                .stream()
-                .sorted(Map.Entry.<UUID, Double>comparingByValue().reversed())
-                .limit(CACHE_LIMIT)
-                .collect(Collectors.toList());
+        // a time in the past means the reset was missed while the server was
+        // down; the scheduler catches it up as soon as the board has started
+        nextReset = computeNextReset(lastReset);
+
+        try {
+            List<Map.Entry<UUID, Double>> last = archive.latestTop(CACHE_LIMIT);
+            if (!last.isEmpty()) {
+                lastTop.set(TopSnapshot.of(last,
+                        Leaderboards.getInstance().getLeaderboardManager().getNameCache()));
+            }
+        } catch (IOException e) {
+            Leaderboards.getInstance().getLogger().warning(
+                    "Could not read period archive for leaderboard '" + name + "': " + e.getMessage());
+        }
     }
 
-    private void load() {
+    // a closed period still waiting for the archive counts as unsaved
+    @Override
+    boolean isDirty() { return dirty || !archiveQueue.isEmpty(); }
+
+    @Override
+    int getSaveInterval() { return saveInterval; }
+
+    @Override
+    synchronized void save() {
+
+        // archive closed periods before the cleared scores replace them on disk
+        ClosedPeriod closed;
+        while ((closed = archiveQueue.peek()) != null) {
+            try {
+                // already archived before a crash that kept the new start off disk
+                if (closed.start() > archive.latestStart()) {
+                    archive.append(closed.start(), closed.end(), closed.taskIndex(),
+                            closed.ranking().range(1, closed.ranking().size()));
+                }
+                archiveQueue.poll();
+            } catch (IOException e) {
+                Leaderboards.getInstance().getLogger().warning(
+                        "Could not archive period of leaderboard '" + name + "': " + e.getMessage());
+                break;
+            }
+        }
+
+        if (!dirty) return;
+        dirty = false;
+
+        long start = System.nanoTime();
+        long written = storage.getBytesWritten();
 
-        if (!dataFile.exists()) {
-            lastReset = System.currentTimeMillis();
-            return;
+        // scores, start and task from one read, so they always belong together
+        PeriodScores current = period;
+
+        try {
+            storage.flush(current.scores, current.start, current.taskIndex);
+            LeaderboardSnapshot.writeTop(topFile, getTopSnapshot().getEntries());
+            metrics.recordSave(System.nanoTime() - start, storage.getBytesWritten() - written, true);
+        } catch (IOException e) {
+            dirty = true;
+            metrics.recordSave(System.nanoTime() - start, storage.getBytesWritten() - written, false);
+            e.printStackTrace();
         }
+    }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
+    // One-time migration of the old YAML data file to the configured storage.
+    private long[] convertLegacy(ScoreStore scores) throws IOException {
 
-        lastReset = config.getLong("last-reset", System.currentTimeMillis());
-        currentTaskIndex = config.getInt("current-task-index", 0);
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
+
+        long lastReset = config.getLong("last-reset", System.currentTimeMillis());
+        int taskIndex = config.getInt("current-task-index", 0);
 
         if (config.contains("baseline")) {
             for (String key : config.getConfigurationSection("baseline").getKeys(false)) {
-                baseline.put(
+                scores.put(
                         UUID.fromString(key),
+                        BASELINE,
                         config.getDouble("baseline." + key)
                 );
             }
@@ -351,52 +530,56 @@ public class TimedLeaderboard extends Leaderboard {
 
         if (config.contains("values")) {
             for (String key : config.getConfigurationSection("values").getKeys(false)) {
-                values.put(
+                scores.put(
                         UUID.fromString(key),
+                        EARNED,
                         config.getDouble("values." + key)
                 );
             }
         }
-    }
 
-    private void saveIfDirtyAsync() {
+        storage.writeAll(scores, lastReset, taskIndex);
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".migrated").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
 
-        if (!dirty) return;
-        dirty = false;
-
-        Map<UUID, Double> baselineSnapshot = new HashMap<>(baseline);
-        Map<UUID, Double> valuesSnapshot = new HashMap<>(values);
+        Leaderboards.getInstance().getLogger().info(
+                "Converted leaderboard '" + name + "' from " + legacyFile.getName() + ".");
 
-        YamlConfiguration config = new YamlConfiguration();
-
-        config.set("last-reset", lastReset);
-        config.set("current-task-index", currentTaskIndex);
+        return new long[]{lastReset, taskIndex};
+    }
 
-        baselineSnapshot.forEach((uuid, value) ->
-                config.set("baseline." + uuid.toString(), value));
+    @Override
+    public void shutdown() {
 
-        valuesSnapshot.forEach((uuid, value) ->
-                config.set("values." + uuid.toString(), value));
+        loaded = false;
 
-        try {
-            config.save(dataFile);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (subscription != null) {
+            subscription.cancel();
         }
+
+        Leaderboards.getInstance().getLeaderboardManager().getPersistence().unregister(this);
     }
 
     @Override
-    public void shutdown() {
+    void close() {
+        storage.close();
+    }
 
-        if (updateTask != null) {
-            updateTask.cancel();
-        }
+    private record ClosedPeriod(long start, long end, int taskIndex, RankIndex ranking) {}
 
-        if (saveTask != null) {
-            saveTask.cancel();
-        }
+    private static final class PeriodScores {
 
-        saveIfDirtyAsync();
+        // one record per player holding the period baseline and the earned value
+        private final ScoreStore scores;
+        private final RankIndex rankIndex = new RankIndex();
+        private final long start;
+        private final int taskIndex;
+
+        private PeriodScores(ScoreStore scores, long start, int taskIndex) {
+            this.scores = scores;
+            this.start = start;
+            this.taskIndex = taskIndex;
+        }
     }
 
 }
\ No newline at end of file
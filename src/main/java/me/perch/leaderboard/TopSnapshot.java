@@ -0,0 +1,135 @@
+package me.perch.leaderboard;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Immutable view of a board's top list, published on every rebuild. Names, raw
+// and formatted values are rendered once here so readers on any thread get a
+// consistent page without formatting anything themselves. Positions are 1-based;
+// out-of-range lookups return "" (or NaN / null).
+public final class TopSnapshot {
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    public static final TopSnapshot EMPTY =
+            new TopSnapshot(0, List.of(), new String[0], new String[0], new String[0], true, 0);
+
+    private final long version;
+    private final List<Map.Entry<UUID, Double>> entries;
+    private final String[] names;
+    private final String[] rawValues;
+    private final String[] formattedValues;
+
+    // false while some names are still being looked up
+    private final boolean namesComplete;
+    private final long namesVersion;
+
+    private TopSnapshot(long version,
+                        List<Map.Entry<UUID, Double>> entries,
+                        String[] names,
+                        String[] rawValues,
+                        String[] formattedValues,
+                        boolean namesComplete,
+                        long namesVersion) {
+        this.version = version;
+        this.entries = entries;
+        this.names = names;
+        this.rawValues = rawValues;
+        this.formattedValues = formattedValues;
+        this.namesComplete = namesComplete;
+        this.namesVersion = namesVersion;
+    }
+
+    static TopSnapshot of(List<Map.Entry<UUID, Double>> entries, NameCache nameCache) {
+
+        List<Map.Entry<UUID, Double>> copy = List.copyOf(entries);
+        int size = copy.size();
+
+        String[] rawValues = new String[size];
+        String[] formattedValues = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            double value = copy.get(i).getValue();
+            rawValues[i] = String.valueOf(value);
+            formattedValues[i] = format(value);
+        }
+
+        return withNames(copy, rawValues, formattedValues, nameCache);
+    }
+
+    // Same entries with any names resolved since this snapshot was built.
+    TopSnapshot refreshNames(NameCache nameCache) {
+        return withNames(entries, rawValues, formattedValues, nameCache);
+    }
+
+    private static TopSnapshot withNames(List<Map.Entry<UUID, Double>> entries,
+                                         String[] rawValues,
+                                         String[] formattedValues,
+                                         NameCache nameCache) {
+
+        long namesVersion = nameCache.getVersion();
+        String[] names = new String[entries.size()];
+        List<UUID> missing = new ArrayList<>();
+
+        for (int i = 0; i < names.length; i++) {
+            UUID uuid = entries.get(i).getKey();
+            String name = nameCache.peek(uuid);
+            if (name == null) missing.add(uuid);
+            names[i] = name != null ? name : "";
+        }
+
+        if (!missing.isEmpty()) nameCache.resolve(missing);
+
+        return new TopSnapshot(VERSIONS.incrementAndGet(), entries, names, rawValues, formattedValues,
+                missing.isEmpty(), namesVersion);
+    }
+
+    public long getVersion() { return version; }
+    public int size() { return entries.size(); }
+    public List<Map.Entry<UUID, Double>> getEntries() { return entries; }
+
+    boolean isMissingNames(NameCache nameCache) {
+        return !namesComplete && namesVersion != nameCache.getVersion();
+    }
+
+    public Map.Entry<UUID, Double> getEntry(int position) {
+        return inRange(position) ? entries.get(position - 1) : null;
+    }
+
+    public UUID getUuid(int position) {
+        return inRange(position) ? entries.get(position - 1).getKey() : null;
+    }
+
+    public double getValue(int position) {
+        return inRange(position) ? entries.get(position - 1).getValue() : Double.NaN;
+    }
+
+    public String getName(int position) {
+        return inRange(position) ? names[position - 1] : "";
+    }
+
+    public String getRawValue(int position) {
+        return inRange(position) ? rawValues[position - 1] : "";
+    }
+
+    public String getFormattedValue(int position) {
+        return inRange(position) ? formattedValues[position - 1] : "";
+    }
+
+    private boolean inRange(int position) {
+        return position >= 1 && position <= entries.size();
+    }
+
+    // Plain decimal without trailing zeros, e.g. 12.0 -> "12", 1.5E7 -> "15000000".
+    public static String format(double value) {
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) return String.valueOf(value);
+
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+
+        return new BigDecimal(String.valueOf(value)).stripTrailingZeros().toPlainString();
+    }
+}
@@ -2,17 +2,45 @@ package me.perch.placeholder;
 
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import me.perch.Leaderboards;
+import me.perch.leaderboard.GlobalRanking;
 import me.perch.leaderboard.Leaderboard;
+import me.perch.leaderboard.LeaderboardManager;
 import me.perch.leaderboard.TimedLeaderboard;
+import me.perch.leaderboard.TopSnapshot;
 import org.bukkit.entity.Player;
+
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PerchLeaderboardExpansion extends PlaceholderExpansion {
 
+    // upper bound on cached routes; the cache is dropped and rebuilt past this
+    private static final int MAX_ROUTES = 4096;
+
     private final Leaderboards plugin;
 
+    // raw params -> resolved route, re-resolved when the loaded boards change
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final PrefixTrie<Kind> prefixes = new PrefixTrie<>();
+
     public PerchLeaderboardExpansion(Leaderboards plugin) {
         this.plugin = plugin;
+
+        prefixes.add("description_", Kind.DESCRIPTION);
+        prefixes.add("topname_", Kind.TOP_NAME);
+        prefixes.add("topvalueraw_", Kind.TOP_VALUE_RAW);
+        prefixes.add("topvalue_", Kind.TOP_VALUE);
+        prefixes.add("rank_", Kind.RANK);
+        prefixes.add("score_", Kind.SCORE);
+        prefixes.add("aroundname_", Kind.AROUND_NAME);
+        prefixes.add("aroundvalue_", Kind.AROUND_VALUE);
+        prefixes.add("timeuntil_", Kind.TIME_UNTIL);
+        prefixes.add("globaltopname_", Kind.GLOBAL_TOP_NAME);
+        prefixes.add("globaltopvalue_", Kind.GLOBAL_TOP_VALUE);
+        prefixes.add("globalrank_", Kind.GLOBAL_RANK);
+        prefixes.add("lasttopname_", Kind.LAST_TOP_NAME);
+        prefixes.add("lasttopvalue_", Kind.LAST_TOP_VALUE);
     }
 
     @Override
@@ -40,130 +68,254 @@ public class PerchLeaderboardExpansion extends PlaceholderExpansion {
 
         if (params == null || params.isEmpty()) return "";
 
-        params = params.toLowerCase(Locale.ROOT);
-
         try {
+            return route(params).resolve(player);
+        } catch (Exception ignored) {}
 
-            // %perchlb_description_<leaderboard>%
-            if (params.startsWith("description_")) {
+        return "";
+    }
 
-                String name = params.substring("description_".length());
-                Leaderboard leaderboard =
-                        plugin.getLeaderboardManager().getLeaderboard(name);
+    private Route route(String params) {
 
-                if (leaderboard instanceof TimedLeaderboard timed) {
-                    return timed.getCurrentTaskDescription();
-                }
+        LeaderboardManager manager = plugin.getLeaderboardManager();
+        int version = manager.getBoardsVersion();
 
-                return leaderboard != null
-                        ? leaderboard.getDescription()
-                        : "";
+        Route route = routes.get(params);
+        if (route != null && route.version == version) return route;
 
-            }
+        route = compile(params.toLowerCase(Locale.ROOT), manager, version);
+
+        if (routes.size() >= MAX_ROUTES) routes.clear();
+        routes.put(params, route);
 
+        return route;
+    }
 
-            // %perchlb_topname_<leaderboard>_<position>%
-            if (params.startsWith("topname_")) {
+    private Route compile(String params, LeaderboardManager manager, int version) {
 
-                String[] split = params.split("_");
-                if (split.length != 3) return "";
+        Kind kind = prefixes.match(params);
+        if (kind == null) return new Route(null, null, 0, version);
 
-                String name = split[1];
-                int position = Integer.parseInt(split[2]);
+        String rest = params.substring(kind.prefixLength);
+        int argument = 0;
 
-                Leaderboard leaderboard =
-                        plugin.getLeaderboardManager().getLeaderboard(name);
+        // %perchlb_topname_<leaderboard>_<position>% and friends
+        if (kind.positional) {
 
-                return leaderboard != null
-                        ? leaderboard.getTopName(position)
-                        : "";
+            int split = rest.indexOf('_');
+            if (split < 0 || rest.indexOf('_', split + 1) >= 0) {
+                return new Route(null, null, 0, version);
             }
 
-            // %perchlb_topvalueraw_<leaderboard>_<position>%
-            if (params.startsWith("topvalueraw_")) {
+            try {
+                argument = Integer.parseInt(rest.substring(split + 1));
+            } catch (NumberFormatException e) {
+                return new Route(null, null, 0, version);
+            }
 
-                String[] split = params.split("_");
-                if (split.length != 3) return "";
+            rest = rest.substring(0, split);
+        }
 
-                String name = split[1];
-                int position = Integer.parseInt(split[2]);
+        return new Route(kind, manager.getLeaderboard(rest), argument, version);
+    }
 
-                Leaderboard leaderboard =
-                        plugin.getLeaderboardManager().getLeaderboard(name);
+    private static String formatValue(String raw) {
 
-                if (leaderboard == null) return "";
+        if (raw == null || raw.isEmpty()) return "";
 
-                String raw = leaderboard.getTopValue(position);
-                return raw != null ? raw : "";
-            }
+        try {
+            return formatValue(Double.parseDouble(raw));
+        } catch (NumberFormatException e) {
+            return raw;
+        }
+    }
+
+    private static String formatValue(double value) {
+        return TopSnapshot.format(value);
+    }
+
+    private static String formatDuration(long millis) {
+
+        long seconds = millis / 1000;
+
+        long days = seconds / 86400;
+        seconds %= 86400;
+
+        long hours = seconds / 3600;
+        seconds %= 3600;
 
-            // %perchlb_topvalue_<leaderboard>_<position>%
-            if (params.startsWith("topvalue_")) {
+        long minutes = seconds / 60;
 
-                String[] split = params.split("_");
-                if (split.length != 3) return "";
+        return days + " days, " + hours + " hours, " + minutes + " minutes";
+    }
 
-                String name = split[1];
-                int position = Integer.parseInt(split[2]);
+    private enum Kind {
+
+        DESCRIPTION("description_", false),
+        TOP_NAME("topname_", true),
+        TOP_VALUE_RAW("topvalueraw_", true),
+        TOP_VALUE("topvalue_", true),
+        RANK("rank_", false),
+        SCORE("score_", false),
+        AROUND_NAME("aroundname_", true),
+        AROUND_VALUE("aroundvalue_", true),
+        TIME_UNTIL("timeuntil_", false),
+        GLOBAL_TOP_NAME("globaltopname_", true),
+        GLOBAL_TOP_VALUE("globaltopvalue_", true),
+        GLOBAL_RANK("globalrank_", false),
+        LAST_TOP_NAME("lasttopname_", true),
+        LAST_TOP_VALUE("lasttopvalue_", true);
+
+        private final int prefixLength;
+        private final boolean positional;
+
+        Kind(String prefix, boolean positional) {
+            this.prefixLength = prefix.length();
+            this.positional = positional;
+        }
+    }
 
-                Leaderboard leaderboard =
-                        plugin.getLeaderboardManager().getLeaderboard(name);
+    // A parsed placeholder bound to its leaderboard. Top names and values come
+    // pre-rendered from the board's TopSnapshot; countdown text is memoised per minute.
+    private static final class Route {
 
-                if (leaderboard == null) return "";
+        private final Kind kind;
+        private final Leaderboard leaderboard;
+        private final int argument;
+        private final int version;
 
-                String raw = leaderboard.getTopValue(position);
-                if (raw == null || raw.isEmpty()) return "";
+        private volatile Memo memo;
 
-                try {
-                    double value = Double.parseDouble(raw);
+        private Route(Kind kind, Leaderboard leaderboard, int argument, int version) {
+            this.kind = kind;
+            this.leaderboard = leaderboard;
+            this.argument = argument;
+            this.version = version;
+        }
+
+        private String resolve(Player player) {
+
+            if (kind == null) return "";
+
+            if (leaderboard == null) {
+                // %perchlb_timeuntil_<leaderboard>% has always reported unknown boards as permanent
+                return kind == Kind.TIME_UNTIL ? "Permanent" : "";
+            }
 
-                    if (value == Math.floor(value)) {
-                        return String.valueOf((long) value);
+            switch (kind) {
+
+                // %perchlb_description_<leaderboard>%
+                case DESCRIPTION -> {
+                    if (leaderboard instanceof TimedLeaderboard timed) {
+                        return timed.getCurrentTaskDescription();
                     }
+                    return leaderboard.getDescription();
+                }
 
-                    return String.valueOf(value);
+                // %perchlb_topname_<leaderboard>_<position>%
+                case TOP_NAME -> {
+                    return leaderboard.getTopName(argument);
+                }
 
-                } catch (NumberFormatException e) {
-                    return raw;
+                // %perchlb_topvalueraw_<leaderboard>_<position>%
+                case TOP_VALUE_RAW -> {
+                    String raw = leaderboard.getTopValue(argument);
+                    return raw != null ? raw : "";
                 }
-            }
 
+                // %perchlb_topvalue_<leaderboard>_<position>%
+                case TOP_VALUE -> {
+                    return leaderboard.getTopFormattedValue(argument);
+                }
+
+                // %perchlb_rank_<leaderboard>%
+                case RANK -> {
+                    if (player == null) return "";
+                    int rank = leaderboard.getRank(player.getUniqueId());
+                    return rank > 0 ? String.valueOf(rank) : "";
+                }
+
+                // %perchlb_score_<leaderboard>%
+                case SCORE -> {
+                    if (player == null) return "";
+                    return formatValue(leaderboard.getScore(player.getUniqueId()));
+                }
+
+                // %perchlb_aroundname_<leaderboard>_<offset>%
+                // %perchlb_aroundvalue_<leaderboard>_<offset>%
+                case AROUND_NAME, AROUND_VALUE -> {
+
+                    if (player == null) return "";
+
+                    int rank = leaderboard.getRank(player.getUniqueId());
+                    if (rank <= 0) return "";
 
-            // %perchlb_timeuntil_<leaderboard>%
-            if (params.startsWith("timeuntil_")) {
+                    int position = rank + argument;
+
+                    return kind == Kind.AROUND_NAME
+                            ? leaderboard.getTopName(position)
+                            : leaderboard.getTopFormattedValue(position);
+                }
 
-                String name = params.substring("timeuntil_".length());
-                Leaderboard leaderboard =
-                        plugin.getLeaderboardManager().getLeaderboard(name);
+                // %perchlb_timeuntil_<leaderboard>%
+                case TIME_UNTIL -> {
 
-                if (leaderboard instanceof TimedLeaderboard timed) {
+                    if (!(leaderboard instanceof TimedLeaderboard timed)) return "Permanent";
 
                     long millis = timed.getTimeUntilResetMillis();
                     if (millis <= 0) return "Resetting...";
 
-                    return formatDuration(millis);
+                    long minutes = millis / 60000;
+
+                    Memo current = memo;
+                    if (current != null && current.minutes == minutes) return current.text;
+
+                    String text = formatDuration(millis);
+                    memo = new Memo(minutes, text);
+                    return text;
                 }
 
-                return "Permanent";
-            }
+                // %perchlb_globaltopname_<leaderboard>_<position>%
+                // %perchlb_globaltopvalue_<leaderboard>_<position>%
+                case GLOBAL_TOP_NAME, GLOBAL_TOP_VALUE -> {
 
-        } catch (Exception ignored) {}
+                    GlobalRanking global = leaderboard.getGlobalRanking();
+                    if (global == null) return "";
 
-        return "";
-    }
+                    TopSnapshot top = global.getTopSnapshot();
 
-    private String formatDuration(long millis) {
+                    return kind == Kind.GLOBAL_TOP_NAME
+                            ? top.getName(argument)
+                            : top.getFormattedValue(argument);
+                }
 
-        long seconds = millis / 1000;
+                // %perchlb_lasttopname_<leaderboard>_<position>%
+                // %perchlb_lasttopvalue_<leaderboard>_<position>%
+                case LAST_TOP_NAME, LAST_TOP_VALUE -> {
 
-        long days = seconds / 86400;
-        seconds %= 86400;
+                    if (!(leaderboard instanceof TimedLeaderboard timed)) return "";
 
-        long hours = seconds / 3600;
-        seconds %= 3600;
+                    TopSnapshot top = timed.getLastPeriodTop();
 
-        long minutes = seconds / 60;
+                    return kind == Kind.LAST_TOP_NAME
+                            ? top.getName(argument)
+                            : top.getFormattedValue(argument);
+                }
 
-        return days + " days, " + hours + " hours, " + minutes + " minutes";
+                // %perchlb_globalrank_<leaderboard>%
+                case GLOBAL_RANK -> {
+
+                    GlobalRanking global = leaderboard.getGlobalRanking();
+                    if (global == null || player == null) return "";
+
+                    int rank = global.getRank(player.getUniqueId());
+                    return rank > 0 ? String.valueOf(rank) : "";
+                }
+            }
+
+            return "";
+        }
     }
-}
\ No newline at end of file
+
+    private record Memo(long minutes, String text) {}
+}
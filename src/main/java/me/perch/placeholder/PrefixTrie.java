@@ -0,0 +1,38 @@
+package me.perch.placeholder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Character trie over placeholder prefixes; a lookup walks the params once
+// instead of trying each prefix with startsWith. Filled once, then read-only.
+final class PrefixTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    void add(String prefix, T value) {
+        Node<T> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), key -> new Node<>());
+        }
+        node.value = value;
+    }
+
+    // value of the shortest registered prefix of params, or null
+    T match(String params) {
+
+        Node<T> node = root;
+
+        for (int i = 0; i < params.length(); i++) {
+            node = node.children.get(params.charAt(i));
+            if (node == null) return null;
+            if (node.value != null) return node.value;
+        }
+
+        return null;
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private T value;
+    }
+}
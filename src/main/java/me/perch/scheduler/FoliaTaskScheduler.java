@@ -0,0 +1,60 @@
+package me.perch.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+// Folia has no main thread: global work goes to the global region scheduler,
+// per-player work to the player's own scheduler, which follows them between regions.
+public class FoliaTaskScheduler implements TaskScheduler {
+
+    private static final long TICK_MILLIS = 50L;
+
+    private final Plugin plugin;
+
+    public FoliaTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionized() { return true; }
+
+    @Override
+    public boolean isGlobalThread() { return Bukkit.isGlobalTickThread(); }
+
+    @Override
+    public void run(Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+
+    @Override
+    public Task runTimer(Runnable task, long delayTicks, long periodTicks) {
+        // the global region rejects a delay below one tick
+        return Bukkit.getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, scheduled -> task.run(), Math.max(1, delayTicks), periodTicks)::cancel;
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, scheduled -> task.run());
+    }
+
+    @Override
+    public Task runTimerAsync(Runnable task, long delayTicks, long periodTicks) {
+        return Bukkit.getAsyncScheduler().runAtFixedRate(plugin, scheduled -> task.run(),
+                delayTicks * TICK_MILLIS, periodTicks * TICK_MILLIS, TimeUnit.MILLISECONDS)::cancel;
+    }
+
+    @Override
+    public boolean runFor(Entity entity, Runnable task, Runnable retired, long delayTicks) {
+        return entity.getScheduler().execute(plugin, task, retired, Math.max(1, delayTicks));
+    }
+
+    @Override
+    public void cancelAll() {
+        Bukkit.getGlobalRegionScheduler().cancelTasks(plugin);
+        Bukkit.getAsyncScheduler().cancelTasks(plugin);
+    }
+}
@@ -0,0 +1,42 @@
+package me.perch.scheduler;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+// Where the plugin's tasks run. On Paper "global" is the main thread; on Folia
+// it is the global region, and work on a player runs on the region owning them.
+public interface TaskScheduler {
+
+    // true on Folia, where players are ticked by several region threads at once
+    boolean isRegionized();
+
+    // true if the caller may touch plugin state owned by the global thread
+    boolean isGlobalThread();
+
+    void run(Runnable task);
+
+    Task runTimer(Runnable task, long delayTicks, long periodTicks);
+
+    void runAsync(Runnable task);
+
+    Task runTimerAsync(Runnable task, long delayTicks, long periodTicks);
+
+    // Runs the task on the thread owning the entity after the delay; 'retired'
+    // runs instead if the entity is removed first. False if it already was.
+    boolean runFor(Entity entity, Runnable task, Runnable retired, long delayTicks);
+
+    void cancelAll();
+
+    interface Task {
+        void cancel();
+    }
+
+    static TaskScheduler create(Plugin plugin) {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return new FoliaTaskScheduler(plugin);
+        } catch (ClassNotFoundException e) {
+            return new PaperTaskScheduler(plugin);
+        }
+    }
+}